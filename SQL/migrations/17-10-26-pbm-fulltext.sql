@@ -0,0 +1,9 @@
+-- Full-text index used when the application runs with pbmgids.search.mode=database.
+-- The column list must match the MATCH(...) clause in PbmRepository.searchFullText exactly.
+-- Note: InnoDB ignores tokens shorter than innodb_ft_min_token_size (default 3).
+
+ALTER TABLE pbm
+    ADD FULLTEXT INDEX ft_pbm_search (
+        name, brand, type, description, protects_against, does_not_protect_against,
+        notes, usage_instructions, distribution, standards
+    );
@@ -27,9 +27,16 @@ public class WebSecurityConfig extends VaadinWebSecurity {
                                 "/robots.txt",
                                 "/icons/**",
                                 "/images/**",
+                                "/assets/**",
+                                "/thumbnails/**",
                                 "/static/**",
-                                "/h2-console/**")
-                        .permitAll());
+                                "/api/warehouse-items/**",
+                                "/h2-console/**",
+                                "/actuator/health",
+                                "/actuator/health/**")
+                        .permitAll()
+                        // Statistics and the cache and file scan operations
+                        .requestMatchers("/actuator/**").hasRole("ADMIN"));
         super.configure(http);
         setLoginView(http, LoginView.class);
     }
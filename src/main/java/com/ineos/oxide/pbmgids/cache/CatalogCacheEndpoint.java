@@ -0,0 +1,38 @@
+package com.ineos.oxide.pbmgids.cache;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+/**
+ * Actuator endpoint for the catalog caches: GET /actuator/catalogcache shows
+ * the hit and miss counts per region, DELETE /actuator/catalogcache announces
+ * an edit of the catalog data so every cache derived from it is evicted.
+ */
+@Component
+@Endpoint(id = "catalogcache")
+public class CatalogCacheEndpoint {
+    private final CatalogCacheService catalogCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CatalogCacheEndpoint(CatalogCacheService catalogCacheService, ApplicationEventPublisher eventPublisher) {
+        this.catalogCacheService = catalogCacheService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @ReadOperation
+    public Map<String, CatalogCacheService.RegionStatistics> statistics() {
+        return catalogCacheService.getStatistics();
+    }
+
+    @DeleteOperation
+    public void evict() {
+        eventPublisher.publishEvent(CatalogChangedEvent.all());
+    }
+}
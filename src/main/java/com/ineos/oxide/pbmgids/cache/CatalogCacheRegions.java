@@ -0,0 +1,19 @@
+package com.ineos.oxide.pbmgids.cache;
+
+/**
+ * Names of the Hibernate second-level cache regions of the read-mostly catalog
+ * entities. Their size and time to live are configured per region in
+ * {@code application.conf}.
+ */
+public final class CatalogCacheRegions {
+    public static final String CATEGORIES = "catalog-categories";
+    public static final String NORMS = "catalog-norms";
+    public static final String DOCUMENTS = "catalog-documents";
+    public static final String WAREHOUSE_ITEMS = "catalog-warehouse-items";
+    public static final String CATEGORY_QUERIES = "catalog-category-queries";
+
+    static final String[] ENTITY_REGIONS = { CATEGORIES, NORMS, DOCUMENTS, WAREHOUSE_ITEMS };
+
+    private CatalogCacheRegions() {
+    }
+}
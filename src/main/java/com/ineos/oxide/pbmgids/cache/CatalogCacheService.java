@@ -0,0 +1,142 @@
+package com.ineos.oxide.pbmgids.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.model.entities.Category;
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Evicts and reports on the catalog caches: the Hibernate second-level and
+ * query caches, and the Spring caches in front of the catalog read methods.
+ * Catalog data is edited outside the regular page views, so whoever changes it
+ * publishes a {@link CatalogChangedEvent}; cached entries otherwise live until
+ * their time to live expires.
+ */
+@Service
+public class CatalogCacheService {
+    private static final Logger logger = Logger.getLogger(CatalogCacheService.class.getName());
+
+    private final SessionFactory sessionFactory;
+    private final CacheManager cacheManager;
+
+    public CatalogCacheService(EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cacheManager = cacheManager;
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            evictAll();
+            return;
+        }
+        if (event.pbmsChanged()) {
+            evictPbms(event.pbmIds());
+        }
+        if (event.categoriesChanged()) {
+            evictCategories(event.categoryIds());
+        }
+    }
+
+    /**
+     * Evicts all cached catalog entities and query results.
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+        clear(CatalogCaches.ALL);
+        logger.info("Evicted all catalog caches");
+    }
+
+    /**
+     * Evicts the given PBMs, and their documents, norms and warehouse items.
+     * The entries of those are not keyed by PBM, so their regions are evicted
+     * as a whole, as are the cached category listings.
+     *
+     * @param pbmIds The ids of the changed PBMs
+     */
+    public void evictPbms(Collection<Integer> pbmIds) {
+        sessionFactory.getCache().evictRegion(CatalogCacheRegions.NORMS);
+        sessionFactory.getCache().evictRegion(CatalogCacheRegions.DOCUMENTS);
+        sessionFactory.getCache().evictRegion(CatalogCacheRegions.WAREHOUSE_ITEMS);
+        evict(CatalogCaches.PBM, pbmIds);
+        clear(CatalogCaches.LISTINGS);
+        logger.info("Evicted the caches of " + pbmIds.size() + " PBMs");
+    }
+
+    /**
+     * Evicts the given categories, the cached category queries and the cached
+     * category listings.
+     *
+     * @param categoryIds The ids of the changed categories
+     */
+    public void evictCategories(Collection<Integer> categoryIds) {
+        categoryIds.forEach(id -> sessionFactory.getCache().evictEntityData(Category.class, id));
+        sessionFactory.getCache().evictQueryRegion(CatalogCacheRegions.CATEGORY_QUERIES);
+        evict(CatalogCaches.CATEGORY, categoryIds);
+        clear(CatalogCaches.LISTINGS);
+        logger.info("Evicted the caches of " + categoryIds.size() + " categories");
+    }
+
+    private void evict(String cacheName, Collection<Integer> ids) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            for (Integer id : ids) {
+                cache.evict(CatalogCaches.key(true, id));
+                cache.evict(CatalogCaches.key(false, id));
+            }
+        }
+    }
+
+    private void clear(String... cacheNames) {
+        for (String cacheName : cacheNames) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Collects hit, miss and put counts of every second-level cache region and
+     * of the query cache. Counts stay at zero when hibernate.generate_statistics
+     * is off; the Spring caches report through /actuator/metrics (cache.gets).
+     *
+     * @return The statistics per region name
+     */
+    public Map<String, RegionStatistics> getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, RegionStatistics> result = new LinkedHashMap<>();
+        for (String region : CatalogCacheRegions.ENTITY_REGIONS) {
+            result.put(region, RegionStatistics.of(statistics.getDomainDataRegionStatistics(region)));
+        }
+        result.put(CatalogCacheRegions.CATEGORY_QUERIES,
+                RegionStatistics.of(statistics.getQueryRegionStatistics(CatalogCacheRegions.CATEGORY_QUERIES)));
+        return result;
+    }
+
+    /**
+     * Counters of one cache region.
+     */
+    public record RegionStatistics(long hits, long misses, long puts, long elementsInMemory) {
+        static RegionStatistics of(CacheRegionStatistics statistics) {
+            if (statistics == null) {
+                return new RegionStatistics(0, 0, 0, 0);
+            }
+            return new RegionStatistics(statistics.getHitCount(), statistics.getMissCount(),
+                    statistics.getPutCount(), statistics.getElementCountInMemory());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ineos.oxide.pbmgids.cache;
+
+import org.springframework.cache.interceptor.SimpleKey;
+
+/**
+ * Names of the Spring caches in front of the read methods of
+ * {@link com.ineos.oxide.pbmgids.services.CatalogService}, and their keys.
+ * Anonymous visitors only get to see published data, so every key holds the
+ * read mode next to the method parameters.
+ */
+public final class CatalogCaches {
+    public static final String PBMS_BY_CATEGORY = "catalog-pbms-by-category";
+    public static final String PBM_COUNT_BY_CATEGORY = "catalog-pbm-count-by-category";
+    public static final String PBMS_BY_SUBTREE = "catalog-pbms-by-subtree";
+    public static final String PBM_COUNT_BY_SUBTREE = "catalog-pbm-count-by-subtree";
+    public static final String PBM = "catalog-pbm";
+    public static final String CATEGORY = "catalog-category";
+
+    /**
+     * The category listings and their counts, which change with any PBM, link
+     * or category.
+     */
+    public static final String[] LISTINGS = { PBMS_BY_CATEGORY, PBM_COUNT_BY_CATEGORY, PBMS_BY_SUBTREE,
+            PBM_COUNT_BY_SUBTREE };
+
+    public static final String[] ALL = { PBMS_BY_CATEGORY, PBM_COUNT_BY_CATEGORY, PBMS_BY_SUBTREE,
+            PBM_COUNT_BY_SUBTREE, PBM, CATEGORY };
+
+    public static final String KEY_GENERATOR = "catalogKeyGenerator";
+
+    private CatalogCaches() {
+    }
+
+    /**
+     * @param publishedOnly Whether the value was read in the published-only
+     *                      mode
+     * @param params        The method parameters
+     * @return The cache key
+     */
+    public static Object key(boolean publishedOnly, Object... params) {
+        Object[] elements = new Object[params.length + 1];
+        elements[0] = publishedOnly;
+        System.arraycopy(params, 0, elements, 1, params.length);
+        return new SimpleKey(elements);
+    }
+}
@@ -0,0 +1,332 @@
+package com.ineos.oxide.pbmgids.categories;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ineos.oxide.pbmgids.model.projections.CategoryLink;
+
+/**
+ * Immutable, id indexed snapshot of the complete category hierarchy. It is
+ * built from a single query and shared by all sessions; a changed hierarchy
+ * is published as a new snapshot instead of modifying this one.
+ * <p>
+ * Roots are the categories without parent (legacy rows use parent id 0, which
+ * is treated the same). Children are ordered by name, like the menu always
+ * showed them.
+ * <p>
+ * The ancestor path of every category is precomputed as an {@code int[]} when
+ * the snapshot is built, so leaf to root hierarchies are resolved with
+ * O(depth) lookups and no queries.
+ * <p>
+ * The categories are also numbered as a nested set: a preorder walk from the
+ * roots gives every category a left bound, and its right bound is the last
+ * position of its subtree in that walk. A subtree is then one contiguous range
+ * of the preorder array, so it is read without walking the children.
+ * <p>
+ * The tree holds unpublished categories too. A category is published for
+ * visitors only if it and all its ancestors are, which
+ * {@link #isPublished(Integer)} and {@link #getPublishedSubtreeIds(Integer)}
+ * check.
+ */
+public final class CategoryTree {
+    private static final Comparator<Node> BY_NAME = Comparator.comparing(Node::name,
+            Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
+    private final Map<Integer, Node> nodes;
+    private final Map<Integer, List<Node>> children;
+    private final List<Node> roots;
+    // category id -> ids from the category itself up to its root
+    private final Map<Integer, int[]> paths;
+    // category ids in preorder, and category id -> {left, right} in that order
+    private final int[] preorder;
+    private final Map<Integer, int[]> bounds;
+
+    /**
+     * A category in the tree.
+     *
+     * @param id        The category id
+     * @param parentId  The parent category id, null for roots
+     * @param name      The category name
+     * @param published Whether the category itself is published
+     */
+    public record Node(Integer id, Integer parentId, String name, boolean published) {
+    }
+
+    private CategoryTree(Map<Integer, Node> nodes, Map<Integer, List<Node>> children, List<Node> roots) {
+        this.nodes = nodes;
+        this.children = children;
+        this.roots = roots;
+        this.paths = computePaths(nodes);
+        this.preorder = new int[nodes.size()];
+        this.bounds = computeBounds(roots, children, preorder);
+    }
+
+    /**
+     * Builds the tree from the id, parent, name and published flag of every
+     * category.
+     *
+     * @param links All rows of the category table
+     * @return The immutable tree
+     */
+    public static CategoryTree build(Collection<? extends CategoryLink> links) {
+        Map<Integer, Node> nodes = new HashMap<>();
+        for (CategoryLink link : links) {
+            nodes.put(link.getId(), toNode(link));
+        }
+        return of(nodes);
+    }
+
+    /**
+     * Derives a new tree with some categories changed, without reloading the
+     * unchanged ones.
+     *
+     * @param changed The current id, parent, name and published flag of the
+     *                changed or added categories
+     * @param removed The ids of the deleted categories
+     * @return The new immutable tree; this tree is left as it is
+     */
+    public CategoryTree withChanges(Collection<? extends CategoryLink> changed, Collection<Integer> removed) {
+        Map<Integer, Node> changedNodes = new HashMap<>(nodes);
+        removed.forEach(changedNodes::remove);
+        for (CategoryLink link : changed) {
+            changedNodes.put(link.getId(), toNode(link));
+        }
+        return of(changedNodes);
+    }
+
+    private static Node toNode(CategoryLink link) {
+        Integer parentId = link.getParentId() == null || link.getParentId() == 0 ? null : link.getParentId();
+        return new Node(link.getId(), parentId, link.getName(), Boolean.TRUE.equals(link.getPublished()));
+    }
+
+    private static CategoryTree of(Map<Integer, Node> nodes) {
+        Map<Integer, List<Node>> children = new HashMap<>();
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.parentId() == null || !nodes.containsKey(node.parentId())) {
+                roots.add(node);
+            } else {
+                children.computeIfAbsent(node.parentId(), key -> new ArrayList<>()).add(node);
+            }
+        }
+
+        roots.sort(BY_NAME);
+        Map<Integer, List<Node>> sortedChildren = new HashMap<>();
+        children.forEach((parentId, list) -> {
+            list.sort(BY_NAME);
+            sortedChildren.put(parentId, List.copyOf(list));
+        });
+        return new CategoryTree(Map.copyOf(nodes), Map.copyOf(sortedChildren), List.copyOf(roots));
+    }
+
+    /**
+     * @return An empty tree
+     */
+    public static CategoryTree empty() {
+        return new CategoryTree(Map.of(), Map.of(), List.of());
+    }
+
+    /**
+     * @return The root categories, ordered by name
+     */
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return The direct children of the category ordered by name, empty for
+     *         leaves and unknown ids
+     */
+    public List<Node> getChildren(Integer categoryId) {
+        return children.getOrDefault(categoryId, List.of());
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return The category, or null if the id is unknown
+     */
+    public Node get(Integer categoryId) {
+        return categoryId != null ? nodes.get(categoryId) : null;
+    }
+
+    public boolean isLeaf(Integer categoryId) {
+        return !children.containsKey(categoryId);
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return The ids from the category itself up to its root, empty for
+     *         unknown ids
+     */
+    public int[] getPath(Integer categoryId) {
+        int[] path = categoryId != null ? paths.get(categoryId) : null;
+        return path != null ? path.clone() : new int[0];
+    }
+
+    /**
+     * Resolves the hierarchies of several categories at once.
+     *
+     * @param categoryIds The category ids
+     * @return Every category with all its ancestors, each once, in leaf to root
+     *         order per given category
+     */
+    public List<Node> getHierarchy(Collection<Integer> categoryIds) {
+        Map<Integer, Node> result = new LinkedHashMap<>();
+        for (Integer categoryId : categoryIds) {
+            int[] path = categoryId != null ? paths.get(categoryId) : null;
+            if (path == null) {
+                continue;
+            }
+            for (int id : path) {
+                result.putIfAbsent(id, nodes.get(id));
+            }
+        }
+        return List.copyOf(result.values());
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return The id of the category and of all its descendants, in preorder
+     */
+    public Set<Integer> getSubtreeIds(Integer categoryId) {
+        int[] range = categoryId != null ? bounds.get(categoryId) : null;
+        if (range == null) {
+            // Unknown, or unreachable from a root in inconsistent data
+            return categoryId != null ? Set.of(categoryId) : Set.of();
+        }
+
+        Set<Integer> result = new LinkedHashSet<>(range[1] - range[0] + 1);
+        for (int i = range[0]; i <= range[1]; i++) {
+            result.add(preorder[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return The id of the category and of all its descendants that are
+     *         published, in preorder; empty if the category itself is not
+     */
+    public Set<Integer> getPublishedSubtreeIds(Integer categoryId) {
+        int[] range = categoryId != null ? bounds.get(categoryId) : null;
+        if (range == null || !isPublished(categoryId)) {
+            return Set.of();
+        }
+
+        Set<Integer> result = new LinkedHashSet<>();
+        int i = range[0];
+        while (i <= range[1]) {
+            if (nodes.get(preorder[i]).published()) {
+                result.add(preorder[i]);
+                i++;
+            } else {
+                // Skip the unpublished category with its whole subtree
+                i = bounds.get(preorder[i])[1] + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param categoryId The category id
+     * @return Whether the category and all its ancestors are published, false
+     *         for unknown ids
+     */
+    public boolean isPublished(Integer categoryId) {
+        int[] path = categoryId != null ? paths.get(categoryId) : null;
+        if (path == null) {
+            return false;
+        }
+        for (int id : path) {
+            if (!nodes.get(id).published()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of categories in the tree
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    private static Map<Integer, int[]> computeBounds(List<Node> roots, Map<Integer, List<Node>> children,
+            int[] preorder) {
+        // Number the categories in preorder, children by name
+        int count = 0;
+        Deque<Node> pending = new ArrayDeque<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            pending.push(roots.get(i));
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            preorder[count++] = node.id();
+            List<Node> nodeChildren = children.getOrDefault(node.id(), List.of());
+            for (int i = nodeChildren.size() - 1; i >= 0; i--) {
+                pending.push(nodeChildren.get(i));
+            }
+        }
+
+        // Walking the preorder backwards sees every subtree before its root,
+        // so subtree sizes add up in one pass
+        Map<Integer, int[]> bounds = new HashMap<>();
+        for (int left = count - 1; left >= 0; left--) {
+            int right = left;
+            for (Node child : children.getOrDefault(preorder[left], List.of())) {
+                right = Math.max(right, bounds.get(child.id())[1]);
+            }
+            bounds.put(preorder[left], new int[] { left, right });
+        }
+        return Map.copyOf(bounds);
+    }
+
+    private static Map<Integer, int[]> computePaths(Map<Integer, Node> nodes) {
+        Map<Integer, int[]> paths = new HashMap<>();
+        for (Integer id : nodes.keySet()) {
+            computePath(nodes, paths, id);
+        }
+        return Map.copyOf(paths);
+    }
+
+    private static void computePath(Map<Integer, Node> nodes, Map<Integer, int[]> paths, Integer id) {
+        // Walk up until a category with a known path, then fill in the paths of
+        // the walked categories from the top down
+        List<Integer> walked = new ArrayList<>();
+        Set<Integer> seen = new LinkedHashSet<>();
+        int[] known = new int[0];
+        Integer current = id;
+        while (current != null && nodes.containsKey(current)) {
+            int[] existing = paths.get(current);
+            if (existing != null) {
+                known = existing;
+                break;
+            }
+            if (!seen.add(current)) {
+                // Cycle in inconsistent data, stop here
+                break;
+            }
+            walked.add(current);
+            current = nodes.get(current).parentId();
+        }
+
+        for (int i = walked.size() - 1; i >= 0; i--) {
+            int[] path = new int[known.length + 1];
+            path[0] = walked.get(i);
+            System.arraycopy(known, 0, path, 1, known.length);
+            paths.put(walked.get(i), path);
+            known = path;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.ineos.oxide.pbmgids.categories;
+
+/**
+ * Published after a new {@link CategoryTree} snapshot has been swapped in.
+ *
+ * @param tree The new snapshot
+ */
+public record CategoryTreeChangedEvent(CategoryTree tree) {
+}
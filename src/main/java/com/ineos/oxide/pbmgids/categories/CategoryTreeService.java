@@ -0,0 +1,112 @@
+package com.ineos.oxide.pbmgids.categories;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.projections.CategoryLink;
+import com.ineos.oxide.pbmgids.model.repositories.CategoryRepository;
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+/**
+ * Holds the {@link CategoryTree} snapshot shared by all sessions. The tree is
+ * loaded with one query on first use; {@link #refresh()} loads a new snapshot
+ * and swaps it in atomically, readers never see a partially built tree.
+ * <p>
+ * The snapshot is shared by all visitors, so it is always loaded with the
+ * {@link PublishedFilter} disabled; the tree knows which categories are
+ * published.
+ */
+@Service
+public class CategoryTreeService {
+    private static final Logger logger = Logger.getLogger(CategoryTreeService.class.getName());
+
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PublishedFilter publishedFilter;
+
+    private volatile CategoryTree tree;
+
+    public CategoryTreeService(CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher,
+            PublishedFilter publishedFilter) {
+        this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.publishedFilter = publishedFilter;
+    }
+
+    /**
+     * @return The current snapshot of the category hierarchy
+     */
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        if (current == null) {
+            synchronized (this) {
+                current = tree;
+                if (current == null) {
+                    current = load();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads the category hierarchy and swaps in the new snapshot.
+     */
+    public synchronized void refresh() {
+        CategoryTree fresh = load();
+        eventPublisher.publishEvent(new CategoryTreeChangedEvent(fresh));
+    }
+
+    /**
+     * Reloads only the given categories and swaps in a tree derived from the
+     * current snapshot. Ids that no longer exist are removed from the tree.
+     *
+     * @param categoryIds The ids of the changed categories
+     */
+    public synchronized void refresh(Collection<Integer> categoryIds) {
+        if (categoryIds.isEmpty()) {
+            return;
+        }
+        CategoryTree current = tree;
+        if (current == null) {
+            // Nothing loaded yet, the first use loads the current state
+            return;
+        }
+
+        List<CategoryLink> changed = publishedFilter
+                .readUnfiltered(() -> categoryRepository.findLinksByIdIn(categoryIds));
+        Set<Integer> removed = new HashSet<>(categoryIds);
+        changed.forEach(link -> removed.remove(link.getId()));
+        CategoryTree fresh = current.withChanges(changed, removed);
+        this.tree = fresh;
+        logger.info("Updated " + categoryIds.size() + " categories in the category tree");
+        eventPublisher.publishEvent(new CategoryTreeChangedEvent(fresh));
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            refresh();
+        } else if (event.categoriesChanged()) {
+            refresh(event.categoryIds());
+        }
+    }
+
+    private CategoryTree load() {
+        long start = System.currentTimeMillis();
+        List<CategoryLink> links = publishedFilter.readUnfiltered(categoryRepository::findAllLinks);
+        CategoryTree fresh = CategoryTree.build(links);
+        this.tree = fresh;
+        logger.info("Loaded category tree with " + fresh.size() + " categories in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return fresh;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ineos.oxide.pbmgids.config;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ineos.oxide.pbmgids.cache.CatalogCaches;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+
+/**
+ * Bounded Caffeine caches for the catalog read methods. Every cache is
+ * limited by weight rather than entry count: a cached list weighs as much as
+ * it has elements, anything else weighs one.
+ * <p>
+ * The keys hold the read mode of the {@link PublishedFilter}, what anonymous
+ * visitors get to see is cached apart from what logged in users see.
+ */
+@Configuration
+@EnableCaching
+public class CatalogCacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${pbmgids.cache.maximum-weight:10000}") long maximumWeight,
+            @Value("${pbmgids.cache.expire-after-write:30m}") Duration expireAfterWrite) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the caches below, a typo in a cache name should fail loudly
+        cacheManager.setCacheNames(List.of());
+        for (String name : CatalogCaches.ALL) {
+            cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                    .maximumWeight(maximumWeight)
+                    .weigher((Object key, Object value) -> value instanceof Collection<?> collection
+                            ? Math.max(1, collection.size())
+                            : 1)
+                    .expireAfterWrite(expireAfterWrite)
+                    .recordStats()
+                    .build());
+        }
+        return cacheManager;
+    }
+
+    @Bean(CatalogCaches.KEY_GENERATOR)
+    public KeyGenerator catalogKeyGenerator() {
+        return (target, method, params) -> CatalogCaches.key(PublishedFilter.isActive(), params);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ineos.oxide.pbmgids.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+
+import jakarta.servlet.Filter;
+
+/**
+ * Enables the {@link PublishedFilter} on every entity manager opened for an
+ * anonymous visitor. The initializer runs for transactional, shared and
+ * open-in-view entity managers alike, so no read path can skip it.
+ * <p>
+ * Who the visitor is, is decided per HTTP request by a servlet filter running
+ * right after the security filter chain; other threads read unfiltered.
+ */
+@Configuration
+public class PublishedFilterConfig {
+
+    @Bean
+    public static BeanPostProcessor publishedFilterInitializer() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean factoryBean) {
+                    factoryBean.setEntityManagerInitializer(PublishedFilter::enableIfActive);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<Filter> publishedFilterRequestFilter() {
+        Filter filter = (request, response, chain) -> {
+            PublishedFilter.enterRequest();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                PublishedFilter.exitRequest();
+            }
+        };
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+        // The security filter chain sets up who the visitor is
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
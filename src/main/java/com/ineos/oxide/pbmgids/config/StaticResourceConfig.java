@@ -1,8 +1,25 @@
 package com.ineos.oxide.pbmgids.config;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.ContentVersionStrategy;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+import org.springframework.web.servlet.resource.VersionStrategy;
+
+import com.ineos.oxide.pbmgids.files.AssetUrls;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 @Configuration
 public class StaticResourceConfig implements WebMvcConfigurer {
@@ -17,5 +34,81 @@ public class StaticResourceConfig implements WebMvcConfigurer {
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("file:./static/", "classpath:/static/")
                 .setCachePeriod(3600);
+
+        // The same files under a content hash (see AssetUrls): a changed file
+        // gets another URL, so these never need to be revalidated
+        VersionStrategy contentHash = new CachingContentVersionStrategy();
+        CacheControl immutable = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        registry.addResourceHandler(AssetUrls.IMAGES_PREFIX + "**")
+                .addResourceLocations("file:./images/", "classpath:/static/images/")
+                .setCacheControl(immutable)
+                .resourceChain(false)
+                .addResolver(new VersionRequiredResolver(contentHash))
+                .addResolver(new VersionResourceResolver().addVersionStrategy(contentHash, "/**"));
+        registry.addResourceHandler(AssetUrls.STATIC_PREFIX + "**")
+                .addResourceLocations("file:./static/", "classpath:/static/")
+                .setCacheControl(immutable)
+                .resourceChain(false)
+                .addResolver(new VersionRequiredResolver(contentHash))
+                .addResolver(new VersionResourceResolver().addVersionStrategy(contentHash, "/**"));
+    }
+
+    /**
+     * A content hash that is computed once per file version instead of on
+     * every request and URL; a file is hashed again when its size or
+     * modification time changes.
+     */
+    static class CachingContentVersionStrategy extends ContentVersionStrategy {
+        private record Hash(long size, long lastModified, String version) {
+        }
+
+        private final Map<String, Hash> hashes = new ConcurrentHashMap<>();
+
+        @Override
+        public String getResourceVersion(Resource resource) {
+            String key;
+            long size;
+            long lastModified;
+            try {
+                key = resource.getURL().toString();
+                size = resource.contentLength();
+                lastModified = resource.lastModified();
+            } catch (IOException e) {
+                return super.getResourceVersion(resource);
+            }
+            Hash hash = hashes.get(key);
+            if (hash == null || hash.size() != size || hash.lastModified() != lastModified) {
+                hash = new Hash(size, lastModified, super.getResourceVersion(resource));
+                hashes.put(key, hash);
+            }
+            return hash.version();
+        }
+    }
+
+    /**
+     * Only lets requests for a versioned path through, an unversioned URL must
+     * not be cached as immutable.
+     */
+    static class VersionRequiredResolver extends AbstractResourceResolver {
+        private final VersionStrategy versionStrategy;
+
+        VersionRequiredResolver(VersionStrategy versionStrategy) {
+            this.versionStrategy = versionStrategy;
+        }
+
+        @Override
+        protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                List<? extends Resource> locations, ResourceResolverChain chain) {
+            if (versionStrategy.extractVersion(requestPath) == null) {
+                return null;
+            }
+            return chain.resolveResource(request, requestPath, locations);
+        }
+
+        @Override
+        protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                ResourceResolverChain chain) {
+            return chain.resolveUrlPath(resourceUrlPath, locations);
+        }
     }
 }
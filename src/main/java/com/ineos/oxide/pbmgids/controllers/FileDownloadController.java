@@ -1,61 +1,120 @@
 package com.ineos.oxide.pbmgids.controllers;
 
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.logging.Logger;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
 
+import com.ineos.oxide.pbmgids.files.FileMetadata;
+import com.ineos.oxide.pbmgids.files.FileMetadataCache;
+import com.ineos.oxide.pbmgids.files.FileRoots;
+import com.ineos.oxide.pbmgids.files.FileSender;
+import com.ineos.oxide.pbmgids.files.PrecompressedFiles;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the documents and norms under {@code ./static/}, falling back to the
+ * classpath.
+ * <p>
+ * Files on disk are looked up in the {@link FileMetadataCache} and streamed by
+ * the {@link FileSender}: strong ETag, Last-Modified and a long-lived
+ * Cache-Control, 304 for revalidations, 206 for byte ranges so interrupted
+ * downloads resume, and a zero-copy body. Text files are sent as their
+ * {@link PrecompressedFiles pre-compressed variant} when the client accepts it.
+ */
 @RestController
 public class FileDownloadController {
+    private static final Logger logger = Logger.getLogger(FileDownloadController.class.getName());
+    private static final String STATIC_PREFIX = "/static/";
+
+    private final FileMetadataCache fileMetadataCache;
+    private final FileSender fileSender;
+    private final PrecompressedFiles precompressedFiles;
+    private final CacheControl cacheControl;
+
+    public FileDownloadController(FileMetadataCache fileMetadataCache, FileSender fileSender,
+            PrecompressedFiles precompressedFiles, @Value("${pbmgids.downloads.max-age:30d}") Duration maxAge) {
+        this.fileMetadataCache = fileMetadataCache;
+        this.fileSender = fileSender;
+        this.precompressedFiles = precompressedFiles;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
 
     @GetMapping(value = "/static/**")
-    public ResponseEntity<Resource> downloadFile(jakarta.servlet.http.HttpServletRequest request) {
+    public ResponseEntity<Resource> downloadFile(HttpServletRequest request, HttpServletResponse response) {
         try {
-            // Extract the file path from the request
+            // Extract the file path from the request, the UI encodes every
+            // path segment
             String requestPath = request.getRequestURI();
-            String filePath = requestPath.substring("/static/".length());
-
-            // Try to find the file in the file system first
-            Path fsPath = Paths.get("./static/" + filePath);
-            Resource resource;
+            String filePath = UriUtils.decode(
+                    requestPath.substring(requestPath.indexOf(STATIC_PREFIX) + STATIC_PREFIX.length()),
+                    StandardCharsets.UTF_8);
 
-            if (Files.exists(fsPath)) {
-                resource = new FileSystemResource(fsPath);
-            } else {
-                // Fall back to classpath resource
-                resource = new ClassPathResource("static/" + filePath);
+            // Try to find the file in the file system first, never outside of
+            // the static directory
+            Path fsPath = FileRoots.resolve(FileRoots.STATIC, filePath);
+            if (fsPath == null) {
+                return ResponseEntity.notFound().build();
+            }
+            FileMetadata file = fileMetadataCache.get(fsPath);
+            if (file != null) {
+                if (PrecompressedFiles.isCompressible(file.mimeType())) {
+                    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    file = precompressedFiles.select(file, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+                }
+                fileSender.send(file, cacheControl, contentDisposition(fsPath.getFileName().toString()), request,
+                        response);
+                return null;
             }
 
+            // Fall back to classpath resource
+            Resource resource = new ClassPathResource("static/" + filePath);
             if (!resource.exists()) {
                 return ResponseEntity.notFound().build();
             }
 
-            // Determine content type
-            String contentType = "application/octet-stream";
-            try {
-                contentType = Files.probeContentType(Paths.get(resource.getFilename()));
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-            } catch (Exception e) {
-                // Use default content type if detection fails
-            }
-
+            // Spring MVC answers ranges and If-Modified-Since for resources
             return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
+                    .lastModified(resource.lastModified())
+                    .cacheControl(cacheControl)
+                    .contentType(MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(resource.getFilename()))
                     .body(resource);
 
+        } catch (NoSuchFileException e) {
+            // Deleted since its metadata was read, nothing was written yet
+            return ResponseEntity.notFound().build();
+        } catch (FileSystemException e) {
+            logger.warning("Could not open " + e.getFile() + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (IOException e) {
+            // Mostly clients that cancelled the download
+            logger.fine("Download of " + request.getRequestURI() + " aborted: " + e.getMessage());
+            return null;
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+
+    private static String contentDisposition(String fileName) {
+        return ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString();
+    }
+}
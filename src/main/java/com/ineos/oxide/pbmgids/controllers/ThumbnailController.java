@@ -0,0 +1,98 @@
+package com.ineos.oxide.pbmgids.controllers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriUtils;
+
+import com.ineos.oxide.pbmgids.files.FileMetadata;
+import com.ineos.oxide.pbmgids.files.FileMetadataCache;
+import com.ineos.oxide.pbmgids.files.FileRoots;
+import com.ineos.oxide.pbmgids.files.FileSender;
+import com.ineos.oxide.pbmgids.files.ThumbnailService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves PBM images scaled down to the size they are displayed in:
+ * {@code /thumbnails/120/pbm/glove.jpg} is {@code ./images/pbm/glove.jpg}
+ * in a square of 120 pixels, {@code /thumbnails/120/mag_doc/...} an image
+ * under {@code ./static/}. Only the {@link ThumbnailService#PIXEL_SIZES sizes}
+ * the UI uses, at each pixel density, are made.
+ * <p>
+ * The URLs the UI renders carry the {@link ThumbnailService#version version}
+ * of the image; while it is current the thumbnail is cached as immutable,
+ * a changed image gets a new URL.
+ */
+@RestController
+public class ThumbnailController {
+    private static final Logger logger = Logger.getLogger(ThumbnailController.class.getName());
+    private static final String THUMBNAILS_PREFIX = "/thumbnails/";
+
+    private final FileMetadataCache fileMetadataCache;
+    private final ThumbnailService thumbnailService;
+    private final FileSender fileSender;
+    private final CacheControl cacheControl;
+    private final CacheControl versionedCacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+            .immutable();
+
+    public ThumbnailController(FileMetadataCache fileMetadataCache, ThumbnailService thumbnailService,
+            FileSender fileSender, @Value("${pbmgids.thumbnails.max-age:7d}") Duration maxAge) {
+        this.fileMetadataCache = fileMetadataCache;
+        this.thumbnailService = thumbnailService;
+        this.fileSender = fileSender;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    @GetMapping(value = "/thumbnails/{size}/**")
+    public ResponseEntity<Void> thumbnail(@PathVariable int size,
+            @RequestParam(name = "v", required = false) String version, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (!ThumbnailService.PIXEL_SIZES.contains(size)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            String requestPath = request.getRequestURI();
+            String sizePrefix = THUMBNAILS_PREFIX + size + "/";
+            String imagePath = UriUtils.decode(
+                    requestPath.substring(requestPath.indexOf(sizePrefix) + sizePrefix.length()),
+                    StandardCharsets.UTF_8);
+
+            Path path = FileRoots.resolveImage(imagePath);
+            FileMetadata image = path != null ? fileMetadataCache.get(path) : null;
+            if (image == null || !image.mimeType().startsWith("image/")) {
+                return ResponseEntity.notFound().build();
+            }
+
+            boolean current = ThumbnailService.version(image).equals(version);
+            fileSender.send(thumbnailService.thumbnail(image, size), current ? versionedCacheControl : cacheControl,
+                    null, request, response);
+            return null;
+        } catch (NoSuchFileException e) {
+            // Deleted since its metadata was read, nothing was written yet
+            return ResponseEntity.notFound().build();
+        } catch (FileSystemException e) {
+            logger.warning("Could not open " + e.getFile() + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (IOException e) {
+            logger.fine("Thumbnail " + request.getRequestURI() + " not sent: " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
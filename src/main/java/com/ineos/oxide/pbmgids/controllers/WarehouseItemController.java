@@ -0,0 +1,44 @@
+package com.ineos.oxide.pbmgids.controllers;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ineos.oxide.pbmgids.search.WarehouseNumberMatch;
+import com.ineos.oxide.pbmgids.search.WarehouseNumberService;
+
+/**
+ * Resolves warehouse numbers for barcode scanners at the stores. Answers come
+ * from the in-memory warehouse number index, the database is not queried.
+ */
+@RestController
+@RequestMapping("/api/warehouse-items")
+public class WarehouseItemController {
+    private static final int MAX_LIMIT = 100;
+
+    private final WarehouseNumberService warehouseNumberService;
+
+    public WarehouseItemController(WarehouseNumberService warehouseNumberService) {
+        this.warehouseNumberService = warehouseNumberService;
+    }
+
+    @GetMapping("/{warehouseNumber}")
+    public ResponseEntity<List<WarehouseNumberMatch>> findByWarehouseNumber(@PathVariable String warehouseNumber) {
+        List<WarehouseNumberMatch> matches = warehouseNumberService.findMatches(warehouseNumber);
+        if (matches.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(matches);
+    }
+
+    @GetMapping
+    public List<WarehouseNumberMatch> findByPrefix(@RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return warehouseNumberService.findByPrefix(prefix, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Content-hashed URLs of images and documents.
+ * <p>
+ * {@code /assets/images/pbm/glove-5d41402abc4b2a76b9719d911017c592.png}
+ * serves {@code ./images/pbm/glove.png}, and only as long as the file still
+ * has that content, so the response may be cached for a year without ever
+ * being revalidated. The hash of a file is computed once per version of the
+ * file (see {@code StaticResourceConfig}).
+ */
+@Service
+public class AssetUrls {
+    public static final String IMAGES_PREFIX = "/assets/images/";
+    public static final String STATIC_PREFIX = "/assets/static/";
+
+    private final ResourceUrlProvider resourceUrlProvider;
+
+    public AssetUrls(ResourceUrlProvider resourceUrlProvider) {
+        this.resourceUrlProvider = resourceUrlProvider;
+    }
+
+    /**
+     * @param relativePath A path relative to {@code ./images/}
+     * @return The encoded, content-hashed URL, or null if there is no such file
+     */
+    public String image(String relativePath) {
+        return versioned(IMAGES_PREFIX, relativePath);
+    }
+
+    /**
+     * @param relativePath A path relative to {@code ./static/}, such as
+     *                     {@code mag_doc/...}
+     * @return The encoded, content-hashed URL, or null if there is no such file
+     */
+    public String staticFile(String relativePath) {
+        return versioned(STATIC_PREFIX, relativePath);
+    }
+
+    private String versioned(String prefix, String relativePath) {
+        String cleanPath = FileRoots.stripLeadingSlashes(relativePath);
+        if (cleanPath.isEmpty()) {
+            return null;
+        }
+        // Resolved against the file names on disk, encoded afterwards
+        String url = resourceUrlProvider.getForLookupPath(prefix + cleanPath);
+        return url != null ? UriUtils.encodePath(url, StandardCharsets.UTF_8) : null;
+    }
+}
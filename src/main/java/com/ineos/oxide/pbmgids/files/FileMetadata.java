@@ -0,0 +1,53 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.nio.file.Path;
+
+/**
+ * What is needed to serve a file without opening it.
+ *
+ * @param path         The absolute path
+ * @param size         The size in bytes
+ * @param lastModified The modification time in epoch milliseconds
+ * @param mimeType     The MIME type
+ * @param eTag         The strong entity tag, derived from size and content
+ *                     checksum, or from size and modification time while
+ *                     the file has no checksum
+ * @param encoding     The content coding of a pre-compressed variant
+ *                     ({@code gzip}, {@code br}), or null for the file itself
+ */
+public record FileMetadata(Path path, long size, long lastModified, String mimeType, String eTag,
+        String encoding) {
+
+    /**
+     * @param checksum The checksum of the content, or null if unknown
+     */
+    static FileMetadata of(Path path, long size, long lastModified, String mimeType, String checksum) {
+        return new FileMetadata(path, size, lastModified, mimeType, eTag(size, lastModified, checksum), null);
+    }
+
+    /**
+     * @param checksum The checksum of the content, or null if unknown
+     * @return The strong entity tag of a file; with a checksum it survives a
+     *         copy or restore that only changes the modification time
+     */
+    static String eTag(long size, long lastModified, String checksum) {
+        String version = checksum != null ? checksum : Long.toHexString(lastModified);
+        return "\"" + Long.toHexString(size) + "-" + version + "\"";
+    }
+
+    /**
+     * @param original The file this is a compressed copy of
+     * @param encoding The content coding of this copy
+     * @return This file, served as the given encoding of the original
+     */
+    FileMetadata asEncodingOf(FileMetadata original, String encoding) {
+        return new FileMetadata(path, size, lastModified, original.mimeType(), eTag, encoding);
+    }
+
+    /**
+     * @return Whether the file still has the given size and modification time
+     */
+    boolean matches(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+}
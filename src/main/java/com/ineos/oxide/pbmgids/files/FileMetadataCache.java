@@ -0,0 +1,169 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.projections.StoredFile;
+import com.ineos.oxide.pbmgids.model.repositories.DocumentRepository;
+import com.ineos.oxide.pbmgids.model.repositories.NormRepository;
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+/**
+ * Keeps the {@link FileMetadata} of every served file by path, so a download
+ * costs one {@code stat} instead of a MIME type probe and a resource lookup.
+ * <p>
+ * The MIME types of documents and norms come from their {@code mime_type}
+ * column, loaded once when the application is ready; other files get the type
+ * of their extension. Size and modification time always come from the file
+ * system: an entry is reused as long as the file still has the size and
+ * modification time it was cached with, and replaced as soon as the file
+ * changes on disk. The stored {@code file_size} is not used, a stale value
+ * would cut off downloads.
+ * <p>
+ * The entity tag of a file {@link FileScanner} checksummed with its current
+ * size and modification time is derived from that checksum, so browsers keep
+ * their copies when the files are copied or restored with new times.
+ */
+@Service
+public class FileMetadataCache {
+    private static final Logger logger = Logger.getLogger(FileMetadataCache.class.getName());
+
+    private final DocumentRepository documentRepository;
+    private final NormRepository normRepository;
+    private final PublishedFilter publishedFilter;
+
+    private final Map<Path, FileMetadata> metadata = new ConcurrentHashMap<>();
+    // path -> MIME type stored with the document or norm
+    private volatile Map<Path, String> storedMimeTypes = Map.of();
+    // path -> file found by the last FileScanner pass, for its checksum
+    private volatile Map<Path, ScannedFile> scannedFiles = Map.of();
+
+    public FileMetadataCache(DocumentRepository documentRepository, NormRepository normRepository,
+            PublishedFilter publishedFilter) {
+        this.documentRepository = documentRepository;
+        this.normRepository = normRepository;
+        this.publishedFilter = publishedFilter;
+    }
+
+    /**
+     * Loads the stored MIME types of all documents and norms, published or not.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadStoredMimeTypes() {
+        Map<Path, String> mimeTypes = new HashMap<>();
+        List<StoredFile> storedFiles = publishedFilter.readUnfiltered(() -> {
+            List<StoredFile> files = new ArrayList<>(documentRepository.findStoredFiles());
+            files.addAll(normRepository.findStoredFiles());
+            return files;
+        });
+        for (StoredFile storedFile : storedFiles) {
+            Path path = FileRoots.resolve(FileRoots.STATIC, storedFile.getFilePath());
+            String mimeType = parseMimeType(storedFile.getMimeType());
+            if (path != null && mimeType != null) {
+                mimeTypes.put(path, mimeType);
+            }
+        }
+        this.storedMimeTypes = Map.copyOf(mimeTypes);
+        metadata.clear();
+        logger.info("Loaded the MIME types of " + mimeTypes.size() + " documents and norms");
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            loadStoredMimeTypes();
+        }
+    }
+
+    /**
+     * @param path An absolute, normalized path
+     * @return The metadata of the file, or null if it is not a regular file
+     */
+    public FileMetadata get(Path path) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            metadata.remove(path);
+            return null;
+        } catch (IOException e) {
+            logger.warning("Could not read the attributes of " + path + ": " + e.getMessage());
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        FileMetadata cached = metadata.get(path);
+        if (cached != null && cached.matches(size, lastModified)) {
+            return cached;
+        }
+        ScannedFile scanned = scannedFiles.get(path);
+        String checksum = scanned != null && scanned.matches(size, lastModified) ? scanned.checksum() : null;
+        FileMetadata fresh = FileMetadata.of(path, size, lastModified, mimeType(path), checksum);
+        metadata.put(path, fresh);
+        return fresh;
+    }
+
+    /**
+     * Takes the checksums of a {@link FileScanner} pass. Entries made without
+     * the checksum of their file are dropped, so their next lookup gets the
+     * checksummed entity tag, and so are the entries of files under the
+     * scanned roots that are gone.
+     *
+     * @param files The files found, by path
+     */
+    void update(Map<Path, ScannedFile> files) {
+        this.scannedFiles = files;
+        metadata.entrySet().removeIf(entry -> {
+            Path path = entry.getKey();
+            FileMetadata cached = entry.getValue();
+            ScannedFile file = files.get(path);
+            if (file != null) {
+                return file.checksum() != null && file.matches(cached.size(), cached.lastModified())
+                        && !cached.eTag().equals(FileMetadata.eTag(file.size(), file.lastModified(), file.checksum()));
+            }
+            return (path.startsWith(FileRoots.IMAGES) || path.startsWith(FileRoots.STATIC)) && !Files.exists(path);
+        });
+    }
+
+    private String mimeType(Path path) {
+        String stored = storedMimeTypes.get(path);
+        if (stored != null) {
+            return stored;
+        }
+        return MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+    }
+
+    private static String parseMimeType(String mimeType) {
+        if (mimeType == null || mimeType.isBlank()) {
+            return null;
+        }
+        try {
+            return MediaType.parseMediaType(mimeType.strip()).toString();
+        } catch (Exception e) {
+            // Hand entered junk, fall back to the extension
+            return null;
+        }
+    }
+}
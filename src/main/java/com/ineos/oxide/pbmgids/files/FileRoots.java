@@ -0,0 +1,74 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The directories, relative to the working directory, that hold the files the
+ * catalog refers to.
+ */
+public final class FileRoots {
+    /** Documents and norms ({@code mag_doc/...}), served under {@code /static/} */
+    public static final Path STATIC = Paths.get("./static").toAbsolutePath().normalize();
+    /** PBM and category images, served under {@code /images/} */
+    public static final Path IMAGES = Paths.get("./images").toAbsolutePath().normalize();
+    /** Scaled down images, see {@link ThumbnailService} */
+    public static final Path THUMBNAILS = Paths.get("./thumbnails").toAbsolutePath().normalize();
+
+    private static final String DOCUMENTS_DIRECTORY = "mag_doc/";
+
+    private FileRoots() {
+    }
+
+    /**
+     * @param root         One of the roots
+     * @param relativePath A path relative to the root, as stored in the
+     *                     database or taken from a URL
+     * @return The absolute, normalized path, or null if it is invalid or points
+     *         outside of the root
+     */
+    public static Path resolve(Path root, String relativePath) {
+        if (relativePath == null || relativePath.isBlank()) {
+            return null;
+        }
+        try {
+            Path path = root.resolve(relativePath.strip()).normalize();
+            return path.startsWith(root) ? path : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param imagePath The image of a PBM or category, as stored in the
+     *                  database
+     * @return The absolute, normalized path, or null if it is invalid
+     */
+    public static Path resolveImage(String imagePath) {
+        String cleanPath = stripLeadingSlashes(imagePath);
+        // Images stored with the documents live under ./static
+        return resolve(cleanPath.startsWith(DOCUMENTS_DIRECTORY) ? STATIC : IMAGES, cleanPath);
+    }
+
+    /**
+     * @param imagePath The image of a PBM or category, as stored in the
+     *                  database
+     * @return Whether it is one of the images stored with the documents, under
+     *         ./static
+     */
+    public static boolean isDocumentImage(String imagePath) {
+        return stripLeadingSlashes(imagePath).startsWith(DOCUMENTS_DIRECTORY);
+    }
+
+    static String stripLeadingSlashes(String path) {
+        if (path == null) {
+            return "";
+        }
+        String cleanPath = path.strip();
+        while (cleanPath.startsWith("/")) {
+            cleanPath = cleanPath.substring(1);
+        }
+        return cleanPath;
+    }
+}
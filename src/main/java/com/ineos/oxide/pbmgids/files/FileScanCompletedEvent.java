@@ -0,0 +1,10 @@
+package com.ineos.oxide.pbmgids.files;
+
+/**
+ * Published after every {@link FileScanner} pass, so what depends on the
+ * presence of files can refresh itself.
+ *
+ * @param report The outcome of the pass
+ */
+public record FileScanCompletedEvent(FileScanReport report) {
+}
@@ -0,0 +1,31 @@
+package com.ineos.oxide.pbmgids.files;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint for the file scanner: GET /actuator/filescan shows the
+ * report of the last pass, with the missing, orphaned and unreadable files,
+ * POST /actuator/filescan schedules a new pass.
+ */
+@Component
+@Endpoint(id = "filescan")
+public class FileScanEndpoint {
+    private final FileScanner fileScanner;
+
+    public FileScanEndpoint(FileScanner fileScanner) {
+        this.fileScanner = fileScanner;
+    }
+
+    @ReadOperation
+    public FileScanReport report() {
+        return fileScanner.getReport();
+    }
+
+    @WriteOperation
+    public void scan() {
+        fileScanner.scheduleScan();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link FileScanner} pass over {@code ./images} and
+ * {@code ./static}. The lists hold at most {@value #LIST_LIMIT} entries
+ * each, the counts are complete.
+ *
+ * @param scannedAt       When the scan finished
+ * @param durationMillis  How long the scan took
+ * @param files           The number of files found
+ * @param bytes           Their total size
+ * @param missingCounts   The number of referenced files that do not exist, by
+ *                        kind of reference
+ * @param missing         Referenced files that do not exist
+ * @param orphanedCount   The number of files nothing refers to
+ * @param orphaned        Files nothing refers to, relative to the working
+ *                        directory
+ * @param unreadableCount The number of files that could not be read
+ * @param unreadable      Files that could not be read, relative to the working
+ *                        directory
+ */
+public record FileScanReport(Instant scannedAt, long durationMillis, int files, long bytes,
+        Map<Reference, Integer> missingCounts, List<MissingFile> missing, int orphanedCount, List<String> orphaned,
+        int unreadableCount, List<String> unreadable) {
+
+    static final int LIST_LIMIT = 1000;
+
+    /** What refers to a file */
+    public enum Reference {
+        PBM_IMAGE, CATEGORY_IMAGE, DOCUMENT, NORM
+    }
+
+    /**
+     * @param reference  What refers to the file
+     * @param storedPath The path as stored in the database
+     */
+    public record MissingFile(Reference reference, String storedPath) {
+    }
+
+    /**
+     * @return The number of referenced files that do not exist
+     */
+    public int missingCount() {
+        return missingCounts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
@@ -0,0 +1,350 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.files.FileScanReport.MissingFile;
+import com.ineos.oxide.pbmgids.files.FileScanReport.Reference;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.projections.StoredFile;
+import com.ineos.oxide.pbmgids.model.repositories.CategoryRepository;
+import com.ineos.oxide.pbmgids.model.repositories.DocumentRepository;
+import com.ineos.oxide.pbmgids.model.repositories.NormRepository;
+import com.ineos.oxide.pbmgids.model.repositories.PbmRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Checks the files under {@code ./images} and {@code ./static} against the
+ * paths the catalog refers to: PBM and category images, documents and norms.
+ * <p>
+ * A pass walks both directories at the same time and checksums the files on
+ * a pool of threads; a file that still has the size and modification time of
+ * the previous pass keeps its checksum without being read again. The pass
+ * ends with a {@link FileScanReport} of the referenced files that are
+ * missing, the files nothing refers to and the files that cannot be read,
+ * published as a {@link FileScanCompletedEvent} and as the
+ * {@code pbmgids.files.*} gauges. The checksums are handed to the
+ * {@link FileMetadataCache} the downloads and thumbnails are served from,
+ * as the entity tags of the files. Symbolic links are followed, directories
+ * are often linked in from a share.
+ * <p>
+ * Passes run when the application is ready and then every
+ * {@code pbmgids.file-scan.interval}, on their own thread.
+ */
+@Service
+public class FileScanner {
+    private static final Logger logger = Logger.getLogger(FileScanner.class.getName());
+
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    private static final Set<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+    private final PbmRepository pbmRepository;
+    private final CategoryRepository categoryRepository;
+    private final DocumentRepository documentRepository;
+    private final NormRepository normRepository;
+    private final PublishedFilter publishedFilter;
+    private final FileMetadataCache fileMetadataCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+
+    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService checksumExecutor;
+    private final AtomicBoolean scanPending = new AtomicBoolean();
+
+    // path -> file found by the last pass, to skip the checksums of
+    // unchanged files
+    private volatile Map<Path, ScannedFile> files = Map.of();
+    private volatile FileScanReport report;
+
+    public FileScanner(PbmRepository pbmRepository, CategoryRepository categoryRepository,
+            DocumentRepository documentRepository, NormRepository normRepository, PublishedFilter publishedFilter,
+            FileMetadataCache fileMetadataCache, ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry, @Value("${pbmgids.file-scan.enabled:true}") boolean enabled,
+            @Value("${pbmgids.file-scan.threads:4}") int threads) {
+        this.pbmRepository = pbmRepository;
+        this.categoryRepository = categoryRepository;
+        this.documentRepository = documentRepository;
+        this.normRepository = normRepository;
+        this.publishedFilter = publishedFilter;
+        this.fileMetadataCache = fileMetadataCache;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.checksumExecutor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "file-scan-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        registerGauges(meterRegistry);
+    }
+
+    /**
+     * @return The report of the last pass, or null before the first one
+     *         finished
+     */
+    public FileScanReport getReport() {
+        return report;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleScan();
+    }
+
+    @Scheduled(initialDelayString = "${pbmgids.file-scan.interval:6h}",
+            fixedDelayString = "${pbmgids.file-scan.interval:6h}")
+    public void scheduledScan() {
+        scheduleScan();
+    }
+
+    /**
+     * Schedules a pass. Requests arriving while a pass is already queued are
+     * coalesced into that pass.
+     */
+    public void scheduleScan() {
+        if (enabled && scanPending.compareAndSet(false, true)) {
+            scanExecutor.execute(this::scan);
+        }
+    }
+
+    private void scan() {
+        scanPending.set(false);
+        try {
+            long start = System.nanoTime();
+            Map<Path, ScannedFile> previous = files;
+
+            // Both directories at once, the walks mostly wait for the disk
+            CompletableFuture<List<ScannedFile>> images = CompletableFuture
+                    .supplyAsync(() -> walk(FileRoots.IMAGES), checksumExecutor);
+            CompletableFuture<List<ScannedFile>> statics = CompletableFuture
+                    .supplyAsync(() -> walk(FileRoots.STATIC), checksumExecutor);
+            List<ScannedFile> found = new ArrayList<>(images.join());
+            found.addAll(statics.join());
+
+            List<CompletableFuture<ScannedFile>> checksums = new ArrayList<>(found.size());
+            for (ScannedFile file : found) {
+                ScannedFile known = previous.get(file.path());
+                if (known != null && known.checksum() != null && known.matches(file.size(), file.lastModified())) {
+                    checksums.add(CompletableFuture.completedFuture(known));
+                } else {
+                    checksums.add(CompletableFuture.supplyAsync(() -> checksum(file), checksumExecutor));
+                }
+            }
+            Map<Path, ScannedFile> scanned = new HashMap<>();
+            for (CompletableFuture<ScannedFile> checksum : checksums) {
+                ScannedFile file = checksum.join();
+                scanned.put(file.path(), file);
+            }
+            this.files = Map.copyOf(scanned);
+            fileMetadataCache.update(scanned);
+
+            FileScanReport fresh = reconcile(scanned, (System.nanoTime() - start) / 1_000_000);
+            this.report = fresh;
+            logger.info("Scanned " + fresh.files() + " files in " + fresh.durationMillis() + " ms: "
+                    + fresh.missingCount() + " missing, " + fresh.orphanedCount() + " orphaned, "
+                    + fresh.unreadableCount() + " unreadable");
+            eventPublisher.publishEvent(new FileScanCompletedEvent(fresh));
+        } catch (Exception e) {
+            logger.severe("Error scanning files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The regular files under a root, without checksums; derived
+     *         files are left out
+     */
+    private static List<ScannedFile> walk(Path root) {
+        List<ScannedFile> found = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return found;
+        }
+        try {
+            Files.walkFileTree(root, FOLLOW_LINKS, Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && !isDerived(file)) {
+                        found.add(new ScannedFile(file.normalize(), attributes.size(),
+                                attributes.lastModifiedTime().toMillis(), null));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // Also a link back to a parent, which is not followed
+                    logger.warning("Could not visit " + file + ": " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warning("Could not walk " + root + ": " + e.getMessage());
+        }
+        return found;
+    }
+
+    /**
+     * @return Whether the file is a compressed variant of a file next to it,
+     *         or a temporary file of the precompression or the thumbnails; a
+     *         compressed file of its own is served as it is and scanned
+     */
+    static boolean isDerived(Path file) {
+        String fileName = file.getFileName().toString();
+        String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        if (lowerCase.endsWith(".tmp")) {
+            return lowerCase.startsWith(".precompress") || lowerCase.startsWith(".thumbnail");
+        }
+        if (lowerCase.endsWith(".gz") || lowerCase.endsWith(".br")) {
+            return Files.isRegularFile(file.resolveSibling(fileName.substring(0, fileName.length() - 3)));
+        }
+        return false;
+    }
+
+    private static ScannedFile checksum(ScannedFile file) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            logger.warning("Could not read " + file.path() + ": " + e.getMessage());
+            return file;
+        }
+        return new ScannedFile(file.path(), file.size(), file.lastModified(), String.format("%08x", crc.getValue()));
+    }
+
+    private FileScanReport reconcile(Map<Path, ScannedFile> scanned, long durationMillis) {
+        Map<Reference, Collection<String>> references = publishedFilter.readUnfiltered(() -> {
+            Map<Reference, Collection<String>> stored = new EnumMap<>(Reference.class);
+            stored.put(Reference.PBM_IMAGE, pbmRepository.findImagePaths());
+            stored.put(Reference.CATEGORY_IMAGE, categoryRepository.findImagePaths());
+            stored.put(Reference.DOCUMENT, filePaths(documentRepository.findStoredFiles()));
+            stored.put(Reference.NORM, filePaths(normRepository.findStoredFiles()));
+            return stored;
+        });
+
+        Set<Path> referenced = new HashSet<>();
+        Map<Reference, Integer> missingCounts = new EnumMap<>(Reference.class);
+        List<MissingFile> missing = new ArrayList<>();
+        for (Map.Entry<Reference, Collection<String>> entry : references.entrySet()) {
+            Reference reference = entry.getKey();
+            boolean image = reference == Reference.PBM_IMAGE || reference == Reference.CATEGORY_IMAGE;
+            int count = 0;
+            for (String storedPath : entry.getValue()) {
+                Path path = image ? FileRoots.resolveImage(storedPath) : FileRoots.resolve(FileRoots.STATIC, storedPath);
+                if (path != null && scanned.containsKey(path)) {
+                    referenced.add(path);
+                    continue;
+                }
+                count++;
+                if (missing.size() < FileScanReport.LIST_LIMIT) {
+                    missing.add(new MissingFile(reference, storedPath));
+                }
+            }
+            missingCounts.put(reference, count);
+        }
+
+        Path workingDirectory = Path.of("").toAbsolutePath();
+        List<String> orphaned = new ArrayList<>();
+        List<String> unreadable = new ArrayList<>();
+        int orphanedCount = 0;
+        int unreadableCount = 0;
+        long bytes = 0;
+        for (ScannedFile file : scanned.values()) {
+            bytes += file.size();
+            String relativePath = workingDirectory.relativize(file.path()).toString();
+            if (!referenced.contains(file.path())) {
+                orphanedCount++;
+                if (orphaned.size() < FileScanReport.LIST_LIMIT) {
+                    orphaned.add(relativePath);
+                }
+            }
+            if (file.checksum() == null) {
+                unreadableCount++;
+                if (unreadable.size() < FileScanReport.LIST_LIMIT) {
+                    unreadable.add(relativePath);
+                }
+            }
+        }
+        orphaned.sort(null);
+        unreadable.sort(null);
+        return new FileScanReport(Instant.now(), durationMillis, scanned.size(), bytes, Map.copyOf(missingCounts),
+                List.copyOf(missing), orphanedCount, List.copyOf(orphaned), unreadableCount, List.copyOf(unreadable));
+    }
+
+    private static List<String> filePaths(List<StoredFile> storedFiles) {
+        return storedFiles.stream().map(StoredFile::getFilePath).toList();
+    }
+
+    private void registerGauges(MeterRegistry meterRegistry) {
+        for (Reference reference : Reference.values()) {
+            gauge("pbmgids.files.missing", "Referenced files that do not exist",
+                    report -> report.missingCounts().getOrDefault(reference, 0))
+                    .tag("reference", reference.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        gauge("pbmgids.files.orphaned", "Files nothing in the catalog refers to",
+                FileScanReport::orphanedCount).register(meterRegistry);
+        gauge("pbmgids.files.unreadable", "Files that could not be read",
+                FileScanReport::unreadableCount).register(meterRegistry);
+        gauge("pbmgids.files.scanned", "Files under ./images and ./static",
+                FileScanReport::files).register(meterRegistry);
+    }
+
+    private Gauge.Builder<FileScanner> gauge(String name, String description, Function<FileScanReport, Number> value) {
+        return Gauge.builder(name, this, scanner -> {
+            FileScanReport current = scanner.report;
+            // No value until the first pass finished
+            return current != null ? value.apply(current).doubleValue() : Double.NaN;
+        }).description(description);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scanExecutor.shutdownNow();
+        checksumExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,185 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes files to HTTP responses, with a zero-copy body where the connector
+ * allows it.
+ * <p>
+ * Validators come from the {@link FileMetadata}, so conditional requests are
+ * answered with 304 (or 412) without reading the file. A single byte range is
+ * answered with 206 partial content and one outside of the file with 416; a
+ * request for several ranges gets the whole file, which HTTP allows, and so
+ * do an invalid Range header and a stale If-Range. A
+ * pre-compressed variant is sent with its Content-Encoding; ranges and
+ * validators then apply to the compressed bytes.
+ * <p>
+ * Bodies of at least {@value #SENDFILE_THRESHOLD} bytes are handed to
+ * Tomcat's sendfile support when the connector offers it: the kernel copies
+ * the file to the socket and no request thread is held while it does. Anything
+ * else is written with {@link FileChannel#transferTo}, the file is never read
+ * into a buffer of this class.
+ */
+@Component
+public class FileSender {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Smaller bodies fit in one write, handing them over costs more
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    /**
+     * A single byte range of a file, inclusive at both ends.
+     */
+    record ByteRange(long start, long end) {
+        /** A well-formed range that lies outside of the file */
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -2);
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Answers a GET or HEAD request with a file. The file is opened before
+     * anything is written to the response, so a file that cannot be read
+     * leaves the response untouched.
+     *
+     * @param file               The file to send
+     * @param cacheControl       The Cache-Control of the response
+     * @param contentDisposition The Content-Disposition, or null for none
+     * @param request            The request
+     * @param response           The response, not yet committed
+     * @throws java.nio.file.FileSystemException When the file cannot be opened,
+     *                                           nothing is written then
+     * @throws IOException                       When the client went away or the
+     *                                           file could not be read
+     */
+    public void send(FileMetadata file, CacheControl cacheControl, String contentDisposition,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (new ServletWebRequest(request, response).checkNotModified(file.eTag(), file.lastModified())) {
+                // Status and validators are set by checkNotModified
+                return;
+            }
+
+            ByteRange range = null;
+            String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+            if (rangeHeader != null && ifRangeMatches(request, file)) {
+                range = selectRange(rangeHeader, file.size());
+            }
+            if (range == ByteRange.UNSATISFIABLE) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.size());
+                return;
+            }
+            if (range != null) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + range.start() + "-" + range.end() + "/" + file.size());
+            } else {
+                range = new ByteRange(0, file.size() - 1);
+            }
+
+            response.setContentType(file.mimeType());
+            if (file.encoding() != null) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, file.encoding());
+            }
+            response.setContentLengthLong(range.length());
+            if (contentDisposition != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+            }
+            if ("HEAD".equals(request.getMethod()) || range.length() == 0) {
+                return;
+            }
+
+            if (range.length() >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.path().toString());
+                request.setAttribute(SENDFILE_START, range.start());
+                // Exclusive
+                request.setAttribute(SENDFILE_END, range.end() + 1);
+                return;
+            }
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    // Truncated since the metadata was read
+                    throw new IOException("Unexpected end of " + file.path());
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * Picks the part of a file a Range header asks for. A header that is not
+     * a valid byte ranges header is ignored, as HTTP requires, and so is a
+     * request for several ranges.
+     *
+     * @param header The Range header
+     * @param size   The size of the file
+     * @return The single range to send, null to send the whole file, or
+     *         {@link ByteRange#UNSATISFIABLE} if the range lies outside of the
+     *         file
+     */
+    static ByteRange selectRange(String header, long size) {
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (ranges.size() != 1) {
+            return null;
+        }
+
+        long start = ranges.get(0).getRangeStart(size);
+        long end = ranges.get(0).getRangeEnd(size);
+        if (start >= size || start > end) {
+            return ByteRange.UNSATISFIABLE;
+        }
+        return new ByteRange(start, end);
+    }
+
+    static boolean ifRangeMatches(HttpServletRequest request, FileMetadata file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(file.eTag());
+        }
+        if (ifRange.startsWith("W/")) {
+            // Weak tags never match for ranges
+            return false;
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == file.lastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
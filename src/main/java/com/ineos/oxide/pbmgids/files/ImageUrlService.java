@@ -0,0 +1,305 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.repositories.PbmRepository;
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The URLs the UI renders PBM images with.
+ * <p>
+ * Every image path stored with a PBM is resolved once, in the background when
+ * the application is ready and again after a change of the PBMs: whether the
+ * file exists, its intrinsic dimensions, and its URLs in each of the
+ * {@link ThumbnailService#SIZES thumbnail sizes}, at every
+ * {@link ThumbnailService#MAX_DENSITY pixel density} the image has the
+ * pixels for. Renderers get a
+ * {@link DisplayedImage} from a map lookup, with the width and height to
+ * reserve for it, and nothing at all for a file that is missing, so no
+ * request is wasted on it. A path that is not indexed yet is shown without
+ * image while it is resolved in the background, the UI thread never reads an
+ * image. A change of some PBMs only resolves their images again; a complete
+ * catalog change and every {@link FileScanner} pass rebuild the whole index,
+ * so files copied to or removed from disk are picked up and paths no PBM
+ * refers to any more are dropped.
+ * <p>
+ * Raster images are shown as thumbnails whose URL carries the
+ * {@link ThumbnailService#version version} of the image, other images (SVG)
+ * under their {@link AssetUrls content-hashed URL}; both are cached by
+ * browsers without revalidation.
+ */
+@Service
+public class ImageUrlService {
+    private static final Logger logger = Logger.getLogger(ImageUrlService.class.getName());
+
+    /**
+     * An image as a renderer shows it.
+     *
+     * @param url    The URL of the image
+     * @param width  The width it is shown in, 0 if unknown
+     * @param height The height it is shown in, 0 if unknown
+     * @param srcset The URLs by pixel density, for high density screens, or
+     *               null if the image has no more pixels to show
+     */
+    public record DisplayedImage(String url, int width, int height, String srcset) {
+    }
+
+    /**
+     * What is known of a stored image path.
+     *
+     * @param size         The size of the file, -1 if it is missing
+     * @param lastModified The modification time of the file
+     * @param displayed    The image by thumbnail size, empty if it is missing
+     */
+    private record ResolvedImage(long size, long lastModified, Map<Integer, DisplayedImage> displayed) {
+        static final ResolvedImage MISSING = new ResolvedImage(-1, -1, Map.of());
+    }
+
+    private final PbmRepository pbmRepository;
+    private final PublishedFilter publishedFilter;
+    private final FileMetadataCache fileMetadataCache;
+    private final AssetUrls assetUrls;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-url-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    // Resolved by the next update, on the rebuild thread
+    private final Set<String> pendingPaths = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> pendingPbmIds = ConcurrentHashMap.newKeySet();
+
+    // stored image path -> resolved image
+    private volatile Map<String, ResolvedImage> images = new ConcurrentHashMap<>();
+
+    public ImageUrlService(PbmRepository pbmRepository, PublishedFilter publishedFilter,
+            FileMetadataCache fileMetadataCache, AssetUrls assetUrls) {
+        this.pbmRepository = pbmRepository;
+        this.publishedFilter = publishedFilter;
+        this.fileMetadataCache = fileMetadataCache;
+        this.assetUrls = assetUrls;
+    }
+
+    /**
+     * @param imagePath The image of a PBM, as stored in the database
+     * @param size      The size it is displayed in, one of the
+     *                  {@link ThumbnailService#SIZES}; the nearest one is
+     *                  taken for any other size
+     * @return How to show the image, or null if there is none, its file is
+     *         missing or it is not resolved yet
+     */
+    public DisplayedImage displayed(String imagePath, int size) {
+        if (imagePath == null || imagePath.isBlank()) {
+            return null;
+        }
+        ResolvedImage image = images.get(imagePath);
+        if (image == null) {
+            if (pendingPaths.add(imagePath)) {
+                scheduleUpdate();
+            }
+            return null;
+        }
+        return image.displayed().get(nearestSize(size));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            scheduleRebuild();
+        } else if (event.pbmsChanged()) {
+            pendingPbmIds.addAll(event.pbmIds());
+            scheduleUpdate();
+        }
+    }
+
+    @EventListener
+    public void onFileScanCompleted(FileScanCompletedEvent event) {
+        // Picks up images copied to or removed from disk since
+        scheduleRebuild();
+    }
+
+    /**
+     * Schedules a background rebuild of the index. Requests arriving while a
+     * rebuild is already queued are coalesced into that rebuild.
+     */
+    public void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Schedules a background update of the pending paths and PBMs, coalesced
+     * like {@link #scheduleRebuild()}.
+     */
+    private void scheduleUpdate() {
+        if (updatePending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::update);
+        }
+    }
+
+    private void update() {
+        updatePending.set(false);
+        List<String> imagePaths = new ArrayList<>(pendingPaths);
+        pendingPaths.removeAll(imagePaths);
+        List<Integer> pbmIds = new ArrayList<>(pendingPbmIds);
+        pendingPbmIds.removeAll(pbmIds);
+        try {
+            if (!pbmIds.isEmpty()) {
+                imagePaths.addAll(publishedFilter.readUnfiltered(() -> pbmRepository.findImagePathsByIdIn(pbmIds)));
+            }
+            // Runs on the rebuild thread, the map is not replaced meanwhile
+            Map<String, ResolvedImage> current = images;
+            for (String imagePath : imagePaths) {
+                current.put(imagePath, resolve(imagePath, current.get(imagePath)));
+            }
+        } catch (Exception e) {
+            logger.severe("Error resolving PBM images: " + e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        try {
+            long start = System.nanoTime();
+            List<String> imagePaths = publishedFilter.readUnfiltered(pbmRepository::findImagePaths);
+            Map<String, ResolvedImage> previous = images;
+            Map<String, ResolvedImage> fresh = new ConcurrentHashMap<>();
+            int missing = 0;
+            for (String imagePath : imagePaths) {
+                ResolvedImage image = resolve(imagePath, previous.get(imagePath));
+                fresh.put(imagePath, image);
+                if (image == ResolvedImage.MISSING) {
+                    missing++;
+                }
+            }
+            this.images = fresh;
+            logger.info("Resolved " + fresh.size() + " PBM images, " + missing + " missing, in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            logger.severe("Error resolving PBM images: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param previous The image as resolved before, reused while its file did
+     *                 not change, or null
+     */
+    private ResolvedImage resolve(String imagePath, ResolvedImage previous) {
+        Path path = FileRoots.resolveImage(imagePath);
+        FileMetadata file = path != null ? fileMetadataCache.get(path) : null;
+        if (file == null) {
+            return ResolvedImage.MISSING;
+        }
+        if (previous != null && previous.size() == file.size() && previous.lastModified() == file.lastModified()) {
+            return previous;
+        }
+
+        Dimension dimensions = readDimensions(path);
+        String cleanPath = FileRoots.stripLeadingSlashes(imagePath);
+        String url = null;
+        if (!ThumbnailService.canScale(path)) {
+            url = FileRoots.isDocumentImage(imagePath) ? assetUrls.staticFile(cleanPath) : assetUrls.image(cleanPath);
+        }
+
+        String thumbnailPath = UriUtils.encodePath(cleanPath, StandardCharsets.UTF_8) + "?v="
+                + ThumbnailService.version(file);
+        Map<Integer, DisplayedImage> displayed = new HashMap<>();
+        for (int size : ThumbnailService.SIZES) {
+            Dimension shown = dimensions != null ? ThumbnailService.fit(dimensions.width, dimensions.height, size)
+                    : new Dimension();
+            String sizeUrl = url != null ? url : "/thumbnails/" + size + "/" + thumbnailPath;
+            String srcset = null;
+            if (url == null && dimensions != null && (dimensions.width > size || dimensions.height > size)) {
+                StringBuilder densities = new StringBuilder(sizeUrl).append(" 1x");
+                for (int density = 2; density <= ThumbnailService.MAX_DENSITY; density++) {
+                    densities.append(", /thumbnails/").append(size * density).append('/').append(thumbnailPath)
+                            .append(' ').append(density).append('x');
+                }
+                srcset = densities.toString();
+            }
+            displayed.put(size, new DisplayedImage(sizeUrl, shown.width, shown.height, srcset));
+        }
+        return new ResolvedImage(file.size(), file.lastModified(), Map.copyOf(displayed));
+    }
+
+    /**
+     * @return The one of the {@link ThumbnailService#SIZES} nearest to a size,
+     *         the larger one of two equally near
+     */
+    static int nearestSize(int size) {
+        int nearest = -1;
+        for (int candidate : ThumbnailService.SIZES) {
+            int distance = Math.abs(candidate - size);
+            int nearestDistance = Math.abs(nearest - size);
+            if (nearest < 0 || distance < nearestDistance || (distance == nearestDistance && candidate > nearest)) {
+                nearest = candidate;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Reads the dimensions from the header of an image, without decoding it.
+     *
+     * @return The dimensions, or null if ImageIO cannot read the image
+     */
+    private static Dimension readDimensions(Path path) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.fine("Could not read the dimensions of " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,251 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pre-compressed variants of the text files under {@code ./static/}, so they
+ * are compressed once instead of on every download.
+ * <p>
+ * A variant is a sibling with the extension of its coding:
+ * {@code manual.html.gz} next to {@code manual.html}. When
+ * {@code pbmgids.static-assets.precompress} is on, the {@code .gz} variants
+ * are written in the background when the application is ready and after a
+ * complete catalog change, for every compressible file that has none or an
+ * outdated one. It is off by default, the directory belongs to whoever
+ * deploys the documents. The JDK has no Brotli encoder, {@code .br} variants
+ * are not written; ones put there by other means are served to the clients
+ * that accept them.
+ * <p>
+ * A variant carries the modification time of the file it was made from and
+ * is only served while the file still has that time, a replaced or restored
+ * file is never answered with the compressed content of another version.
+ */
+@Component
+public class PrecompressedFiles {
+    private static final Logger logger = Logger.getLogger(PrecompressedFiles.class.getName());
+
+    static final String GZIP = "gzip";
+    static final String BROTLI = "br";
+    // Best first
+    private static final List<String> CODINGS = List.of(BROTLI, GZIP);
+    // Below this, the headers weigh more than what is saved
+    private static final long MIN_SIZE = 1024;
+
+    private final FileMetadataCache fileMetadataCache;
+    private final boolean precompress;
+    private final ExecutorService compressExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "static-asset-compress");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compressPending = new AtomicBoolean();
+
+    public PrecompressedFiles(FileMetadataCache fileMetadataCache,
+            @Value("${pbmgids.static-assets.precompress:false}") boolean precompress) {
+        this.fileMetadataCache = fileMetadataCache;
+        this.precompress = precompress;
+    }
+
+    /**
+     * @param mimeType A MIME type
+     * @return Whether content of the type is worth compressing
+     */
+    public static boolean isCompressible(String mimeType) {
+        MediaType type;
+        try {
+            type = MediaType.parseMediaType(mimeType);
+        } catch (Exception e) {
+            return false;
+        }
+        String subtype = type.getSubtype();
+        return "text".equals(type.getType())
+                || subtype.endsWith("json") || subtype.endsWith("xml") || subtype.endsWith("javascript");
+    }
+
+    /**
+     * Picks the representation of a file for a request.
+     *
+     * @param file           The file
+     * @param acceptEncoding The Accept-Encoding header of the request, may be
+     *                       null
+     * @return The best pre-compressed variant the client accepts, or the file
+     *         itself
+     */
+    public FileMetadata select(FileMetadata file, String acceptEncoding) {
+        if (acceptEncoding == null || !isCompressible(file.mimeType())) {
+            return file;
+        }
+        for (String coding : CODINGS) {
+            if (!accepts(acceptEncoding, coding)) {
+                continue;
+            }
+            FileMetadata variant = fileMetadataCache.get(variantPath(file.path(), coding));
+            if (variant != null && variant.lastModified() == file.lastModified()) {
+                return variant.asEncodingOf(file, coding);
+            }
+        }
+        return file;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleCompression();
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            scheduleCompression();
+        }
+    }
+
+    /**
+     * Schedules a background pass that writes the missing and outdated
+     * {@code .gz} variants. Requests arriving while a pass is already queued
+     * are coalesced into that pass.
+     */
+    public void scheduleCompression() {
+        if (precompress && compressPending.compareAndSet(false, true)) {
+            compressExecutor.execute(this::compressAll);
+        }
+    }
+
+    private void compressAll() {
+        compressPending.set(false);
+        long start = System.nanoTime();
+        int written = 0;
+        Path root = FileRoots.STATIC;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (compressIfNeeded(path)) {
+                    written++;
+                }
+            }
+        } catch (Exception e) {
+            logger.severe("Error compressing the files under " + root + ": " + e.getMessage());
+        }
+        logger.info("Wrote " + written + " pre-compressed files in " + (System.nanoTime() - start) / 1_000_000
+                + " ms");
+    }
+
+    private boolean compressIfNeeded(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".gz") || fileName.endsWith(".br")) {
+            return false;
+        }
+        if (!isCompressible(mimeType(fileName))) {
+            return false;
+        }
+        FileMetadata file = fileMetadataCache.get(path);
+        if (file == null || file.size() < MIN_SIZE) {
+            return false;
+        }
+        Path target = variantPath(path, GZIP);
+        FileMetadata existing = fileMetadataCache.get(target);
+        if (existing != null && existing.lastModified() == file.lastModified()) {
+            return false;
+        }
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(path.getParent(), ".precompress", ".tmp");
+            try (OutputStream out = new BestGzipOutputStream(Files.newOutputStream(temp))) {
+                Files.copy(path, out);
+            }
+            if (Files.size(temp) >= file.size()) {
+                // Already compressed content, not worth a variant
+                Files.delete(temp);
+                return false;
+            }
+            // Same time as the file, so any other version of it makes it outdated
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(file.lastModified()));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Could not compress " + path + ": " + e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Nothing more to do
+                }
+            }
+            return false;
+        }
+    }
+
+    private static String mimeType(String fileName) {
+        return MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElse("");
+    }
+
+    private static Path variantPath(Path path, String coding) {
+        String extension = BROTLI.equals(coding) ? ".br" : ".gz";
+        return path.resolveSibling(path.getFileName() + extension);
+    }
+
+    /**
+     * @param acceptEncoding The Accept-Encoding header of a request
+     * @param coding         A content coding
+     * @return Whether the header lists the coding with a non-zero quality
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            if (!parts[0].strip().equalsIgnoreCase(coding)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].strip();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        compressExecutor.shutdownNow();
+    }
+
+    private static final class BestGzipOutputStream extends GZIPOutputStream {
+        BestGzipOutputStream(OutputStream out) throws IOException {
+            super(out);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
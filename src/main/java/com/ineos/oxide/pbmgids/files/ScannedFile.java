@@ -0,0 +1,22 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.nio.file.Path;
+
+/**
+ * A file as found by the {@link FileScanner}.
+ *
+ * @param path         The absolute path
+ * @param size         The size in bytes
+ * @param lastModified The modification time in epoch milliseconds
+ * @param checksum     The CRC-32C of the content in hex, the entity tag of
+ *                     the file, or null if the file could not be read
+ */
+public record ScannedFile(Path path, long size, long lastModified, String checksum) {
+
+    /**
+     * @return Whether the file still has the given size and modification time
+     */
+    boolean matches(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+}
@@ -0,0 +1,440 @@
+package com.ineos.oxide.pbmgids.files;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Scaled down copies of the PBM images, in the sizes the UI displays them in.
+ * <p>
+ * A thumbnail is made on its first request and kept under
+ * {@code ./thumbnails/<size>/}, mirroring the path of its image, with the
+ * modification time of the image: an image that changes gets a new thumbnail
+ * on the next request, the old one is replaced. Images that already fit are
+ * served as they are, and so are images ImageIO cannot decode. Every size is
+ * made at twice its pixels as well, for high density screens.
+ * <p>
+ * After every {@link FileScanner} pass the thumbnails of images that are gone
+ * or changed since are deleted, together with the temporary files of
+ * interrupted writes, so the directory does not grow with every image ever
+ * replaced.
+ * <p>
+ * Images that may be transparent (PNG, GIF) get a PNG thumbnail, all others a
+ * JPEG. The JDK has no WebP encoder; at these sizes a JPEG weighs a few
+ * kilobytes anyway.
+ */
+@Service
+public class ThumbnailService {
+    private static final Logger logger = Logger.getLogger(ThumbnailService.class.getName());
+
+    /** The sizes, in CSS pixels, the UI displays images in */
+    public static final Set<Integer> SIZES = Set.of(64, 120, 160, 280);
+    /** The pixel densities thumbnails are made for */
+    public static final int MAX_DENSITY = 2;
+    /** The sizes, in image pixels, thumbnails are made in */
+    public static final Set<Integer> PIXEL_SIZES = SIZES.stream()
+            .flatMap(size -> IntStream.rangeClosed(1, MAX_DENSITY).mapToObj(density -> size * density))
+            .collect(Collectors.toUnmodifiableSet());
+
+    private static final float JPEG_QUALITY = 0.85f;
+    // Temporary files younger than this may still be written to
+    private static final Duration TEMP_FILE_AGE = Duration.ofHours(1);
+
+    private final FileMetadataCache fileMetadataCache;
+    // Decoding a large image takes a lot of memory, not too many at once
+    private final Semaphore scaling = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // thumbnail path -> lock, so concurrent requests scale an image once
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+    private final ExecutorService cleanupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean cleanupPending = new AtomicBoolean();
+
+    public ThumbnailService(FileMetadataCache fileMetadataCache) {
+        this.fileMetadataCache = fileMetadataCache;
+    }
+
+    /**
+     * @param image The metadata of an image under one of the {@link FileRoots}
+     * @param size  One of the {@link #PIXEL_SIZES}
+     * @return The thumbnail, made if needed, or the image itself if it is
+     *         small enough or cannot be scaled
+     */
+    public FileMetadata thumbnail(FileMetadata image, int size) {
+        if (!PIXEL_SIZES.contains(size)) {
+            throw new IllegalArgumentException("Unsupported thumbnail size " + size);
+        }
+        Path target = thumbnailPath(image.path(), size);
+        if (target == null) {
+            return image;
+        }
+        FileMetadata thumbnail = current(target, image);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        Object lock = locks.computeIfAbsent(target, key -> new Object());
+        try {
+            synchronized (lock) {
+                thumbnail = current(target, image);
+                if (thumbnail == null && scale(image, target, size)) {
+                    thumbnail = fileMetadataCache.get(target);
+                }
+            }
+        } finally {
+            locks.remove(target, lock);
+        }
+        return thumbnail != null ? thumbnail : image;
+    }
+
+    /**
+     * @param image An image file
+     * @return Whether thumbnails can be made of the image, vector images and
+     *         formats ImageIO cannot read are only served as they are
+     */
+    public static boolean canScale(Path image) {
+        return thumbnailExtension(image) != null;
+    }
+
+    /**
+     * @param width  The width of an image
+     * @param height The height of an image
+     * @param size   The size of the square to fit the image in
+     * @return The dimensions of the thumbnail of the image in that size
+     */
+    public static Dimension fit(int width, int height, int size) {
+        if (width <= size && height <= size) {
+            return new Dimension(width, height);
+        }
+        double scale = Math.min((double) size / width, (double) size / height);
+        return new Dimension(Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)));
+    }
+
+    /**
+     * @param image An image
+     * @return A value that changes whenever the thumbnails of the image do
+     */
+    public static String version(FileMetadata image) {
+        return Long.toHexString(image.lastModified());
+    }
+
+    @EventListener
+    public void onFileScanCompleted(FileScanCompletedEvent event) {
+        scheduleCleanup();
+    }
+
+    /**
+     * Schedules a background pass that deletes the outdated thumbnails.
+     * Requests arriving while a pass is already queued are coalesced into
+     * that pass.
+     */
+    public void scheduleCleanup() {
+        if (cleanupPending.compareAndSet(false, true)) {
+            cleanupExecutor.execute(this::cleanup);
+        }
+    }
+
+    private void cleanup() {
+        cleanupPending.set(false);
+        Path root = FileRoots.THUMBNAILS;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long start = System.nanoTime();
+        long tempCutoff = System.currentTimeMillis() - TEMP_FILE_AGE.toMillis();
+        AtomicInteger deleted = new AtomicInteger();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (isOutdated(file, attributes, tempCutoff) && Files.deleteIfExists(file)) {
+                        deleted.incrementAndGet();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.warning("Could not read " + file + ": " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                    if (!directory.equals(root)) {
+                        try {
+                            Files.delete(directory);
+                        } catch (DirectoryNotEmptyException ignored) {
+                            // Still holds thumbnails
+                        } catch (IOException deleteError) {
+                            logger.fine("Could not delete " + directory + ": " + deleteError.getMessage());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (Exception e) {
+            logger.severe("Error cleaning up the thumbnails: " + e.getMessage());
+        }
+        logger.info("Deleted " + deleted + " outdated thumbnails in " + (System.nanoTime() - start) / 1_000_000
+                + " ms");
+    }
+
+    /**
+     * A thumbnail is outdated when its image is gone or has another
+     * modification time; a request may have just replaced it, it is then made
+     * again on the next one.
+     */
+    private boolean isOutdated(Path file, BasicFileAttributes attributes, long tempCutoff) {
+        if (file.getFileName().toString().endsWith(".tmp")) {
+            // Left by an interrupted write, unless it is still being written
+            return attributes.lastModifiedTime().toMillis() < tempCutoff;
+        }
+        Path image = imagePath(file);
+        FileMetadata source = image != null ? fileMetadataCache.get(image) : null;
+        return source == null || source.lastModified() != attributes.lastModifiedTime().toMillis();
+    }
+
+    private FileMetadata current(Path target, FileMetadata image) {
+        FileMetadata thumbnail = fileMetadataCache.get(target);
+        return thumbnail != null && thumbnail.lastModified() == image.lastModified() ? thumbnail : null;
+    }
+
+    private boolean scale(FileMetadata image, Path target, int size) {
+        try {
+            scaling.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            BufferedImage source = read(image.path(), size);
+            if (source == null || (source.getWidth() <= size && source.getHeight() <= size)) {
+                // Unreadable, or as small as it gets
+                return false;
+            }
+            String format = formatOf(target);
+            BufferedImage scaled = resize(source, size, "png".equals(format));
+
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), ".thumbnail", ".tmp");
+            try {
+                write(scaled, format, temp);
+                // Same time as the image, so a later edit makes it outdated
+                Files.setLastModifiedTime(temp, FileTime.fromMillis(image.lastModified()));
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Broken files, color models ImageIO does not handle, a full disk
+            logger.warning("Could not scale " + image.path() + ": " + e.getMessage());
+            return false;
+        } finally {
+            scaling.release();
+        }
+    }
+
+    /**
+     * Decodes an image, skipping pixels while it stays at least twice the
+     * thumbnail size, so a photo of several megapixels is never decoded whole.
+     */
+    private static BufferedImage read(Path path, int size) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.min(width, height) / (2 * size));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } catch (IOException e) {
+                logger.warning("Could not read " + path + ": " + e.getMessage());
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Fits an image in a square of {@code size} pixels, halving it in steps so
+     * bilinear interpolation keeps the detail of every source pixel.
+     */
+    static BufferedImage resize(BufferedImage source, int size, boolean alpha) {
+        Dimension target = fit(source.getWidth(), source.getHeight(), size);
+        int targetWidth = target.width;
+        int targetHeight = target.height;
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                if (!alpha) {
+                    // Transparent pixels of a GIF or PNG become white, not black
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void write(BufferedImage image, String format, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * @return Where the thumbnail of an image is kept, or null if it is not
+     *         an image under one of the roots
+     */
+    static Path thumbnailPath(Path image, int size) {
+        Path root;
+        if (image.startsWith(FileRoots.IMAGES)) {
+            root = FileRoots.IMAGES;
+        } else if (image.startsWith(FileRoots.STATIC)) {
+            root = FileRoots.STATIC;
+        } else {
+            return null;
+        }
+        String extension = thumbnailExtension(image);
+        if (extension == null) {
+            return null;
+        }
+        return FileRoots.THUMBNAILS.resolve(Integer.toString(size))
+                .resolve(root.getFileName().toString())
+                .resolve(root.relativize(image).toString() + extension);
+    }
+
+    /**
+     * The reverse of {@link #thumbnailPath}.
+     *
+     * @return The image a thumbnail was made of, or null if the path is not
+     *         one of a thumbnail in one of the {@link #PIXEL_SIZES}
+     */
+    static Path imagePath(Path thumbnail) {
+        if (!thumbnail.startsWith(FileRoots.THUMBNAILS)) {
+            return null;
+        }
+        Path relative = FileRoots.THUMBNAILS.relativize(thumbnail);
+        if (relative.getNameCount() < 3) {
+            return null;
+        }
+        int size;
+        try {
+            size = Integer.parseInt(relative.getName(0).toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String rootName = relative.getName(1).toString();
+        Path root = FileRoots.IMAGES.getFileName().toString().equals(rootName) ? FileRoots.IMAGES
+                : FileRoots.STATIC.getFileName().toString().equals(rootName) ? FileRoots.STATIC : null;
+        String path = relative.subpath(2, relative.getNameCount()).toString();
+        int extension = path.lastIndexOf('.');
+        if (root == null || extension < 0) {
+            return null;
+        }
+        Path image = FileRoots.resolve(root, path.substring(0, extension));
+        // Also rules out sizes no longer made and extensions of other formats
+        return image != null && PIXEL_SIZES.contains(size) && thumbnail.equals(thumbnailPath(image, size)) ? image
+                : null;
+    }
+
+    private static String thumbnailExtension(Path image) {
+        String fileName = image.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".png") || fileName.endsWith(".gif")) {
+            return ".png";
+        }
+        if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || fileName.endsWith(".bmp")) {
+            return ".jpg";
+        }
+        // Vector images and formats ImageIO cannot read
+        return null;
+    }
+
+    private static String formatOf(Path thumbnail) {
+        return thumbnail.getFileName().toString().endsWith(".png") ? "png" : "jpeg";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cleanupExecutor.shutdownNow();
+    }
+}
@@ -4,25 +4,27 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
-import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
 
 /**
  * Manages PBM comparison selection logic.
  * Handles selection limits, notifications, and state updates.
+ * PBMs are identified by id, so a selection made in one list view survives
+ * reloading or paging of the rows.
  */
 public class ComparisonManager {
 
     private static final int MAX_COMPARISON_ITEMS = 3;
 
-    private final List<Pbm> selectedPbms = new ArrayList<>();
-    private Consumer<List<Pbm>> onSelectionChanged;
+    private final List<PbmSummary> selectedPbms = new ArrayList<>();
+    private Consumer<List<PbmSummary>> onSelectionChanged;
 
     public ComparisonManager() {
     }
 
-    public ComparisonManager(Consumer<List<Pbm>> onSelectionChanged) {
+    public ComparisonManager(Consumer<List<PbmSummary>> onSelectionChanged) {
         this.onSelectionChanged = onSelectionChanged;
     }
 
@@ -34,7 +36,7 @@ public class ComparisonManager {
      * @return true if the operation was successful, false if it was rejected (e.g.,
      *         limit reached)
      */
-    public boolean setSelected(Pbm pbm, boolean selected) {
+    public boolean setSelected(PbmSummary pbm, boolean selected) {
         if (selected) {
             return addToSelection(pbm);
         } else {
@@ -42,8 +44,8 @@ public class ComparisonManager {
         }
     }
 
-    private boolean addToSelection(Pbm pbm) {
-        if (selectedPbms.contains(pbm)) {
+    private boolean addToSelection(PbmSummary pbm) {
+        if (isSelected(pbm)) {
             return true; // Already selected
         }
 
@@ -58,22 +60,26 @@ public class ComparisonManager {
         return true;
     }
 
-    private boolean removeFromSelection(Pbm pbm) {
-        boolean removed = selectedPbms.remove(pbm);
+    private boolean removeFromSelection(PbmSummary pbm) {
+        boolean removed = selectedPbms.removeIf(selected -> selected.id().equals(pbm.id()));
         if (removed) {
             notifySelectionChanged();
         }
         return true;
     }
 
-    public boolean isSelected(Pbm pbm) {
-        return selectedPbms.contains(pbm);
+    public boolean isSelected(PbmSummary pbm) {
+        return selectedPbms.stream().anyMatch(selected -> selected.id().equals(pbm.id()));
     }
 
-    public List<Pbm> getSelectedPbms() {
+    public List<PbmSummary> getSelectedPbms() {
         return new ArrayList<>(selectedPbms);
     }
 
+    public List<Integer> getSelectedPbmIds() {
+        return selectedPbms.stream().map(PbmSummary::id).toList();
+    }
+
     public int getSelectionCount() {
         return selectedPbms.size();
     }
@@ -87,7 +93,7 @@ public class ComparisonManager {
         notifySelectionChanged();
     }
 
-    public void setOnSelectionChanged(Consumer<List<Pbm>> callback) {
+    public void setOnSelectionChanged(Consumer<List<PbmSummary>> callback) {
         this.onSelectionChanged = callback;
     }
 
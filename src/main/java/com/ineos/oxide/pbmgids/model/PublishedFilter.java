@@ -0,0 +1,113 @@
+package com.ineos.oxide.pbmgids.model;
+
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ineos.oxide.base.security.services.SecurityUtils;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * The published-only read mode of the catalog. Visitors that are not logged in
+ * only get to see published PBMs, categories, norms and warehouse items.
+ * <p>
+ * The mode is the Hibernate filter {@value #NAME}, declared on {@code Pbm}
+ * and applied to the catalog entities and their collections. It is enabled on
+ * every entity manager opened for an anonymous visitor (see
+ * {@code PublishedFilterConfig}), so the {@code published} condition is part
+ * of the SQL and unpublished rows are never read.
+ * <p>
+ * The mode is opt-in per thread: a servlet filter marks every HTTP request,
+ * Vaadin requests included, with whether its visitor is logged in. Threads that
+ * serve no request (schedulers, executors, startup listeners) always read the
+ * complete catalog. Enabled filters are part of
+ * the query cache key, the cached results of both modes do not mix.
+ * <p>
+ * The shared in-memory structures (search index, suggestions, category tree)
+ * hold the complete catalog; they are loaded with
+ * {@link #readUnfiltered(Supplier)} and check {@link #isActive()} when they
+ * answer.
+ */
+@Component
+public class PublishedFilter {
+    public static final String NAME = "publishedOnly";
+    public static final String CONDITION = "published = true";
+
+    // Whether the request served by this thread is an anonymous visitor's
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate unfilteredTransaction;
+
+    public PublishedFilter(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.entityManager = entityManager;
+        this.unfilteredTransaction = new TransactionTemplate(transactionManager);
+        this.unfilteredTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.unfilteredTransaction.setReadOnly(true);
+    }
+
+    /**
+     * @return Whether the current visitor only gets to see published data;
+     *         false outside of a request
+     */
+    public static boolean isActive() {
+        return Boolean.TRUE.equals(ACTIVE.get());
+    }
+
+    /**
+     * Marks the current thread as serving a request of the current visitor,
+     * once the security context of the request is set up.
+     */
+    public static void enterRequest() {
+        ACTIVE.set(!SecurityUtils.isUserLoggedIn());
+    }
+
+    /**
+     * Clears the mark of {@link #enterRequest()} when the request is done.
+     */
+    public static void exitRequest() {
+        ACTIVE.remove();
+    }
+
+    /**
+     * Enables the filter on a new entity manager when the current visitor
+     * only gets to see published data.
+     *
+     * @param entityManager The new entity manager
+     */
+    public static void enableIfActive(EntityManager entityManager) {
+        if (isActive()) {
+            entityManager.unwrap(Session.class).enableFilter(NAME);
+        }
+    }
+
+    /**
+     * Runs reads for the shared in-memory structures, which need the complete
+     * catalog whoever triggers the load, in their own read-only transaction
+     * with the filter disabled.
+     *
+     * @param reads The reads
+     * @return The result of the reads
+     */
+    public <T> T readUnfiltered(Supplier<T> reads) {
+        return unfilteredTransaction.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            boolean enabled = session.getEnabledFilter(NAME) != null;
+            if (enabled) {
+                session.disableFilter(NAME);
+            }
+            try {
+                return reads.get();
+            } finally {
+                if (enabled) {
+                    session.enableFilter(NAME);
+                }
+            }
+        });
+    }
+}
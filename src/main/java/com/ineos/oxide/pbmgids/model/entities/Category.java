@@ -3,6 +3,13 @@ package com.ineos.oxide.pbmgids.model.entities;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Filter;
+
+import com.ineos.oxide.pbmgids.cache.CatalogCacheRegions;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -18,6 +25,8 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CatalogCacheRegions.CATEGORIES)
+@Filter(name = PublishedFilter.NAME)
 @Table(name = "category")
 public class Category extends BaseEntity {
     @Id
@@ -40,9 +49,11 @@ public class Category extends BaseEntity {
     private Category parent;
 
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL)
+    @Filter(name = PublishedFilter.NAME)
     private Set<Category> children = new LinkedHashSet<>();
 
     @ManyToMany
+    @Filter(name = PublishedFilter.NAME)
     @JoinTable(name = "pbm_category", joinColumns = @JoinColumn(name = "category_id"), inverseJoinColumns = @JoinColumn(name = "pbm_id"))
     private Set<Pbm> pbms = new LinkedHashSet<>();
 
@@ -1,5 +1,10 @@
 package com.ineos.oxide.pbmgids.model.entities;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.ineos.oxide.pbmgids.cache.CatalogCacheRegions;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -8,6 +13,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CatalogCacheRegions.DOCUMENTS)
 @Table(name = "document")
 public class Document extends BaseEntity {
     @Id
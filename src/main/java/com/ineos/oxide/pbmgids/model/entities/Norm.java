@@ -1,5 +1,12 @@
 package com.ineos.oxide.pbmgids.model.entities;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Filter;
+
+import com.ineos.oxide.pbmgids.cache.CatalogCacheRegions;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -8,6 +15,8 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CatalogCacheRegions.NORMS)
+@Filter(name = PublishedFilter.NAME)
 @Table(name = "norm")
 public class Norm extends BaseEntity {
     @Id
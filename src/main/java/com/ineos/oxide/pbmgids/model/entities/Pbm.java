@@ -3,6 +3,11 @@ package com.ineos.oxide.pbmgids.model.entities;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.FilterDef;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -16,6 +21,8 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
 @Entity
+@FilterDef(name = PublishedFilter.NAME, defaultCondition = PublishedFilter.CONDITION, applyToLoadByKey = true)
+@Filter(name = PublishedFilter.NAME)
 @Table(name = "pbm")
 public class Pbm extends BaseEntity {
     @Id
@@ -57,6 +64,7 @@ public class Pbm extends BaseEntity {
     private Integer hits;
 
     @ManyToMany(mappedBy = "pbms")
+    @Filter(name = PublishedFilter.NAME)
     private Set<Category> categories = new LinkedHashSet<>();
 
     @ManyToMany
@@ -64,10 +72,12 @@ public class Pbm extends BaseEntity {
     private Set<Document> documents = new LinkedHashSet<>();
 
     @ManyToMany
+    @Filter(name = PublishedFilter.NAME)
     @JoinTable(name = "pbm_norm", joinColumns = @JoinColumn(name = "pbm_id"), inverseJoinColumns = @JoinColumn(name = "norm_id"))
     private Set<Norm> norms = new LinkedHashSet<>();
 
     @OneToMany(mappedBy = "pbm", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Filter(name = PublishedFilter.NAME)
     private Set<WarehouseItem> warehouseItems = new LinkedHashSet<>();
 
     public Integer getId() {
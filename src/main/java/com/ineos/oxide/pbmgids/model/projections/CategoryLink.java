@@ -0,0 +1,15 @@
+package com.ineos.oxide.pbmgids.model.projections;
+
+/**
+ * A category id with the id of its parent, its name and whether it is
+ * published, without loading the entity.
+ */
+public interface CategoryLink {
+    Integer getId();
+
+    Integer getParentId();
+
+    String getName();
+
+    Boolean getPublished();
+}
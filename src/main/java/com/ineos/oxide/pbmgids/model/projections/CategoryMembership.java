@@ -0,0 +1,10 @@
+package com.ineos.oxide.pbmgids.model.projections;
+
+/**
+ * One row of the PBM to category link table.
+ */
+public interface CategoryMembership {
+    Integer getCategoryId();
+
+    Integer getPbmId();
+}
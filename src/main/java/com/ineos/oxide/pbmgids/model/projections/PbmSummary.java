@@ -0,0 +1,14 @@
+package com.ineos.oxide.pbmgids.model.projections;
+
+import com.ineos.oxide.pbmgids.model.entities.Pbm;
+
+/**
+ * The columns of a PBM shown in list views, without its rich text columns and
+ * relations.
+ */
+public record PbmSummary(Integer id, String name, String typeName, String brand, String image) {
+
+    public static PbmSummary of(Pbm pbm) {
+        return new PbmSummary(pbm.getId(), pbm.getName(), pbm.getTypeName(), pbm.getBrand(), pbm.getImage());
+    }
+}
@@ -0,0 +1,11 @@
+package com.ineos.oxide.pbmgids.model.projections;
+
+/**
+ * The file path and MIME type of a document or norm, as stored in the
+ * database.
+ */
+public interface StoredFile {
+    String getFilePath();
+
+    String getMimeType();
+}
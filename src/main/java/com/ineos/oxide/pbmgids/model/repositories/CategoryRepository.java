@@ -1,21 +1,37 @@
 package com.ineos.oxide.pbmgids.model.repositories;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.ineos.oxide.pbmgids.cache.CatalogCacheRegions;
 import com.ineos.oxide.pbmgids.model.entities.Category;
+import com.ineos.oxide.pbmgids.model.projections.CategoryLink;
+
+import jakarta.persistence.QueryHint;
 
 public interface CategoryRepository extends JpaRepository<Category, Integer> {
-    @Query(value = "select * from category where parent_id = 0 or parent_id is null order by name", nativeQuery = true)
+    // Legacy rows use parent id 0 for roots
+    @Query("select c from Category c where c.parent.id = 0 or c.parent is null order by c.name")
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CatalogCacheRegions.CATEGORY_QUERIES) })
     List<Category> findRootCategories();
 
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CatalogCacheRegions.CATEGORY_QUERIES) })
     List<Category> findByParent_IdOrderByNameAsc(Integer parentId);
 
-    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.parent WHERE c.id IN :ids")
-    List<Category> findByIdInWithParent(List<Integer> ids);
+    @Query("select c.id as id, c.parent.id as parentId, c.name as name, c.published as published from Category c")
+    List<CategoryLink> findAllLinks();
+
+    @Query("select c.id as id, c.parent.id as parentId, c.name as name, c.published as published from Category c where c.id in :ids")
+    List<CategoryLink> findLinksByIdIn(@Param("ids") Collection<Integer> ids);
 
-    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.parent WHERE c.id = :id")
-    java.util.Optional<Category> findByIdWithParent(Integer id);
+    @Query("select distinct c.image from Category c where c.image is not null and c.image <> ''")
+    List<String> findImagePaths();
 }
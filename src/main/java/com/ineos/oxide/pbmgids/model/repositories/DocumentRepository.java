@@ -1,8 +1,14 @@
 package com.ineos.oxide.pbmgids.model.repositories;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.ineos.oxide.pbmgids.model.entities.Document;
+import com.ineos.oxide.pbmgids.model.projections.StoredFile;
 
 public interface DocumentRepository extends JpaRepository<Document, Integer> {
+    @Query("select d.filePath as filePath, d.mimeType as mimeType from Document d where d.filePath is not null")
+    List<StoredFile> findStoredFiles();
 }
@@ -1,8 +1,14 @@
 package com.ineos.oxide.pbmgids.model.repositories;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.ineos.oxide.pbmgids.model.entities.Norm;
+import com.ineos.oxide.pbmgids.model.projections.StoredFile;
 
 public interface NormRepository extends JpaRepository<Norm, Integer> {
+    @Query("select n.filePath as filePath, n.mimeType as mimeType from Norm n where n.filePath is not null")
+    List<StoredFile> findStoredFiles();
 }
@@ -0,0 +1,95 @@
+package com.ineos.oxide.pbmgids.model.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * A {@link Pageable} starting at any offset, for lazy data providers whose
+ * ranges are not aligned on their size. Repository queries run with it read
+ * exactly {@code limit} rows from {@code offset}; the order comes from the
+ * query itself.
+ */
+public final class OffsetPageRequest implements Pageable {
+    private final long offset;
+    private final int limit;
+
+    private OffsetPageRequest(long offset, int limit) {
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @param offset The index of the first row, not negative
+     * @param limit  The maximum number of rows, positive
+     * @return The page
+     */
+    public static OffsetPageRequest of(long offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return new OffsetPageRequest(offset, limit);
+    }
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / limit);
+    }
+
+    @Override
+    public int getPageSize() {
+        return limit;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return Sort.unsorted();
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetPageRequest(offset + limit, limit);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(0, offset - limit), limit) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetPageRequest(0, limit);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new OffsetPageRequest((long) pageNumber * limit, limit);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof OffsetPageRequest page && page.offset == offset && page.limit == limit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(offset) * 31 + limit;
+    }
+
+    @Override
+    public String toString() {
+        return "OffsetPageRequest [offset=" + offset + ", limit=" + limit + "]";
+    }
+}
@@ -1,13 +1,16 @@
 package com.ineos.oxide.pbmgids.model.repositories;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.CategoryMembership;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 
 public interface PbmRepository extends JpaRepository<Pbm, Integer> {
     List<Pbm> findByNameContainingIgnoreCase(String name);
@@ -15,9 +18,62 @@ public interface PbmRepository extends JpaRepository<Pbm, Integer> {
     @Query("select p from Pbm p join p.categories c where c.id = :categoryId")
     List<Pbm> findByCategoryId(@Param("categoryId") Integer categoryId);
 
-    @Query("select distinct p from Pbm p join p.categories c left join fetch p.categories left join fetch p.documents left join fetch p.norms left join fetch p.warehouseItems where c.id = :categoryId")
-    List<Pbm> findByCategoryIdWithRelations(@Param("categoryId") Integer categoryId);
+    @Query("select new com.ineos.oxide.pbmgids.model.projections.PbmSummary(p.id, p.name, p.typeName, p.brand, p.image) from Pbm p join p.categories c where c.id = :categoryId order by p.name, p.id")
+    List<PbmSummary> findSummariesByCategoryId(@Param("categoryId") Integer categoryId, Pageable pageable);
 
-    @Query("select p from Pbm p left join fetch p.categories left join fetch p.documents left join fetch p.norms left join fetch p.warehouseItems where p.id = :id")
-    Optional<Pbm> findDetailedById(@Param("id") Integer id);
+    @Query("select count(p) from Pbm p join p.categories c where c.id = :categoryId")
+    long countByCategoryId(@Param("categoryId") Integer categoryId);
+
+    // A PBM linked to several categories of the subtree is listed once
+    @Query("select new com.ineos.oxide.pbmgids.model.projections.PbmSummary(p.id, p.name, p.typeName, p.brand, p.image) from Pbm p where exists (select 1 from p.categories c where c.id in :categoryIds) order by p.name, p.id")
+    List<PbmSummary> findSummariesByCategoryIdIn(@Param("categoryIds") Collection<Integer> categoryIds,
+            Pageable pageable);
+
+    @Query("select count(p) from Pbm p where exists (select 1 from p.categories c where c.id in :categoryIds)")
+    long countByCategoryIdIn(@Param("categoryIds") Collection<Integer> categoryIds);
+
+    @Query("select new com.ineos.oxide.pbmgids.model.projections.PbmSummary(p.id, p.name, p.typeName, p.brand, p.image) from Pbm p where p.id in :ids")
+    List<PbmSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // One query per collection, so the result grows with the sum of the
+    // collection sizes instead of their product. Run them in one transaction
+    // with the query that loaded the PBMs to fill the same instances.
+
+    @Query("select p from Pbm p left join fetch p.categories where p.id in :ids")
+    List<Pbm> fetchCategoriesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select p from Pbm p left join fetch p.documents where p.id in :ids")
+    List<Pbm> fetchDocumentsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select p from Pbm p left join fetch p.norms where p.id in :ids")
+    List<Pbm> fetchNormsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select distinct p from Pbm p left join fetch p.warehouseItems")
+    List<Pbm> findAllWithWarehouseItems();
+
+    @Query("select distinct p from Pbm p left join fetch p.warehouseItems where p.id in :ids")
+    List<Pbm> findAllByIdWithWarehouseItems(@Param("ids") Collection<Integer> ids);
+
+    @Query(value = "select p.id, match(p.name, p.brand, p.type, p.description, p.protects_against, p.does_not_protect_against, p.notes, p.usage_instructions, p.distribution, p.standards) against (:query in boolean mode) "
+            + "* least(1.3, 1 + 0.05 * log10(1 + p.hits)) as score "
+            + "from pbm p "
+            + "where match(p.name, p.brand, p.type, p.description, p.protects_against, p.does_not_protect_against, p.notes, p.usage_instructions, p.distribution, p.standards) against (:query in boolean mode) "
+            + "and (:publishedOnly = false or p.published = true) "
+            + "and (:allCategories = true or exists (select 1 from pbm_category pc where pc.pbm_id = p.id and pc.category_id in (:categoryIds))) "
+            + "order by score desc, p.name limit :limit offset :offset", nativeQuery = true)
+    List<Object[]> searchFullText(@Param("query") String query, @Param("publishedOnly") boolean publishedOnly,
+            @Param("allCategories") boolean allCategories, @Param("categoryIds") Collection<Integer> categoryIds,
+            @Param("limit") int limit, @Param("offset") int offset);
+
+    @Query("select distinct p.image from Pbm p where p.image is not null and p.image <> ''")
+    List<String> findImagePaths();
+
+    @Query("select distinct p.image from Pbm p where p.id in :ids and p.image is not null and p.image <> ''")
+    List<String> findImagePathsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select c.id as categoryId, p.id as pbmId from Pbm p join p.categories c")
+    List<CategoryMembership> findCategoryMemberships();
+
+    @Query("select c.id as categoryId, p.id as pbmId from Pbm p join p.categories c where p.id in :ids")
+    List<CategoryMembership> findCategoryMembershipsByPbmIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,177 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.repositories.PbmRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * {@link PbmSearchEngine} that pushes searches down to the database, for
+ * catalogs too large to keep an in-memory index for.
+ * <p>
+ * On MySQL the {@code ft_pbm_search} FULLTEXT index is queried in boolean mode
+ * (every token must match as a word prefix) and ranked by MySQL relevance. On
+ * any other database, such as the HSQLDB used by the dev profile, a portable
+ * LIKE query is used instead: like the in-memory index, every folded query
+ * token has to occur in one of the columns, and scores the weight of the best
+ * {@link SearchField} it occurs in. Both scores are multiplied by the
+ * {@link Popularity} boost of the PBM.
+ * <p>
+ * The LIKE fallback compares the folded tokens with the lower-cased columns,
+ * which folds case but not accents, and matches the HTML columns as stored.
+ */
+@Component
+@ConditionalOnProperty(name = "pbmgids.search.mode", havingValue = "database")
+public class DatabasePbmSearchEngine implements PbmSearchEngine {
+    private static final Logger logger = Logger.getLogger(DatabasePbmSearchEngine.class.getName());
+
+    // Placeholder for the IN list when no category filter applies; an empty IN
+    // list is not valid SQL
+    private static final Set<Integer> NO_CATEGORIES = Set.of(-1);
+
+    // Popularity#boost in SQL
+    private static final String POPULARITY_BOOST = "least(" + Popularity.MAX_BOOST + ", 1 + " + Popularity.WEIGHT
+            + " * log10(1 + p.hits))";
+
+    // column -> weight of a token occurring in it, best first
+    private static final Map<String, Double> LIKE_COLUMNS = likeColumns();
+
+    private final PbmRepository pbmRepository;
+    private final PbmSearchService pbmSearchService;
+    private final DataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private boolean fullTextSupported;
+
+    public DatabasePbmSearchEngine(PbmRepository pbmRepository, PbmSearchService pbmSearchService,
+            DataSource dataSource, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.pbmRepository = pbmRepository;
+        this.pbmSearchService = pbmSearchService;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void detectFullTextSupport() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            fullTextSupported = product != null
+                    && (product.toLowerCase().contains("mysql") || product.toLowerCase().contains("mariadb"));
+            logger.info("Database search mode on " + product + " using "
+                    + (fullTextSupported ? "FULLTEXT index" : "LIKE fallback"));
+        } catch (Exception e) {
+            logger.warning("Could not detect database product, using LIKE fallback: " + e.getMessage());
+            fullTextSupported = false;
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(String query, SearchScope scope, Integer categoryId, int offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        // Native queries are not filtered by Hibernate
+        boolean publishedOnly = PublishedFilter.isActive();
+        boolean allCategories = scope == SearchScope.CATALOG || categoryId == null;
+        Collection<Integer> categoryIds = allCategories ? NO_CATEGORIES
+                : pbmSearchService.getScopeCategoryIds(scope, categoryId);
+        if (categoryIds.isEmpty()) {
+            // The category is not published
+            return List.of();
+        }
+
+        if (fullTextSupported) {
+            // Tokens only contain letters and digits, so no boolean mode operators
+            // can be injected
+            String booleanQuery = tokens.stream()
+                    .map(token -> "+" + token + "*")
+                    .collect(Collectors.joining(" "));
+            List<Object[]> rows = pbmRepository.searchFullText(booleanQuery, publishedOnly, allCategories,
+                    categoryIds, limit, offset);
+            return rows.stream()
+                    .map(row -> new SearchHit(((Number) row[0]).intValue(), ((Number) row[1]).doubleValue()))
+                    .toList();
+        }
+        return searchLike(tokens, publishedOnly, allCategories ? null : categoryIds, offset, limit);
+    }
+
+    /**
+     * @param categoryIds The categories to search in, null for all
+     */
+    private List<SearchHit> searchLike(List<String> tokens, boolean publishedOnly, Collection<Integer> categoryIds,
+            int offset, int limit) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        List<String> scores = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            String parameter = "token" + scores.size();
+            // Tokens only contain letters and digits, so no LIKE wildcards
+            parameters.addValue(parameter, "%" + token + "%");
+            String tokenScore = tokenScore(parameter);
+            scores.add(tokenScore);
+            conditions.add(tokenScore + " > 0");
+        }
+        if (publishedOnly) {
+            conditions.add("p.published = true");
+        }
+        if (categoryIds != null) {
+            conditions.add("exists (select 1 from pbm_category pc where pc.pbm_id = p.id"
+                    + " and pc.category_id in (:categoryIds))");
+            parameters.addValue("categoryIds", categoryIds);
+        }
+        parameters.addValue("limit", limit);
+        parameters.addValue("offset", offset);
+
+        String sql = "select p.id, (" + String.join(" + ", scores) + ") * " + POPULARITY_BOOST + " as score"
+                + " from pbm p where " + String.join(" and ", conditions)
+                + " order by score desc, p.name limit :limit offset :offset";
+        return jdbcTemplate.query(sql, parameters,
+                (resultSet, rowNum) -> new SearchHit(resultSet.getInt(1), resultSet.getDouble(2)));
+    }
+
+    /**
+     * @return The weight of the best column the token parameter occurs in, 0
+     *         if it occurs in none
+     */
+    private static String tokenScore(String parameter) {
+        StringBuilder score = new StringBuilder("case");
+        LIKE_COLUMNS.forEach((column, weight) -> score.append(" when lower(p.").append(column).append(") like :")
+                .append(parameter).append(" then ").append(weight));
+        return score.append(" else 0 end").toString();
+    }
+
+    private static Map<String, Double> likeColumns() {
+        Map<String, Double> columns = new LinkedHashMap<>();
+        columns.put("name", SearchField.NAME.getWeight());
+        columns.put("brand", SearchField.BRAND.getWeight());
+        columns.put("type", SearchField.TYPE_NAME.getWeight());
+        columns.put("description", SearchField.DESCRIPTION.getWeight());
+        columns.put("protects_against", SearchField.PROTECTS_AGAINST.getWeight());
+        columns.put("does_not_protect_against", SearchField.DOES_NOT_PROTECT_AGAINST.getWeight());
+        columns.put("notes", SearchField.NOTES.getWeight());
+        columns.put("usage_instructions", SearchField.USAGE_INSTRUCTIONS.getWeight());
+        columns.put("distribution", SearchField.DISTRIBUTION.getWeight());
+        columns.put("standards", SearchField.STANDARDS.getWeight());
+        return columns;
+    }
+}
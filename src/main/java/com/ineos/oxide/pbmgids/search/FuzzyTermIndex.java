@@ -0,0 +1,181 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typo tolerant lookup over a vocabulary of folded terms.
+ * <p>
+ * Every term is split into trigrams of {@code "$" + term + "$"}; a query
+ * token only has to be compared with the terms sharing enough trigrams with
+ * it, as one edit destroys at most three trigrams. Padding both ends leaves
+ * even a four letter token with one edit a trigram in common with its term. The few candidates that pass are
+ * verified with a Levenshtein distance that stops as soon as the bound is
+ * exceeded. A token also matches a term it is a (misspelled) prefix of, so
+ * "handscoe" finds "handschoenen".
+ * <p>
+ * Not thread safe; {@link PbmSearchIndex} guards it with its own lock.
+ */
+class FuzzyTermIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int MIN_TOKEN_LENGTH = 4;
+    private static final int LONG_TOKEN_LENGTH = 8;
+
+    // trigram -> terms containing it
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    // term -> number of documents using it, a term is dropped when this reaches 0
+    private final Map<String, Integer> references = new HashMap<>();
+
+    /**
+     * A vocabulary term close to a query token.
+     *
+     * @param term     The vocabulary term
+     * @param distance The edit distance between the token and the term, or the
+     *                 term prefix when {@code prefix} is set
+     * @param prefix   Whether the token matched a prefix of the term
+     */
+    record Match(String term, int distance, boolean prefix) {
+    }
+
+    void add(String term) {
+        if (references.merge(term, 1, Integer::sum) == 1) {
+            for (String gram : grams(term)) {
+                grams.computeIfAbsent(gram, key -> new HashSet<>()).add(term);
+            }
+        }
+    }
+
+    void remove(String term) {
+        Integer count = references.get(term);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            references.put(term, count - 1);
+            return;
+        }
+
+        references.remove(term);
+        for (String gram : grams(term)) {
+            Set<String> terms = grams.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the vocabulary terms within the allowed edit distance of a token:
+     * none for tokens shorter than four characters, one edit up to seven
+     * characters and two edits beyond that.
+     *
+     * @param token The folded query token
+     * @return The close terms, empty if the token is too short
+     */
+    List<Match> match(String token) {
+        int maxDistance = maxDistance(token);
+        if (maxDistance == 0) {
+            return List.of();
+        }
+
+        List<String> tokenGrams = grams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : new HashSet<>(tokenGrams)) {
+            for (String term : grams.getOrDefault(gram, Set.of())) {
+                shared.merge(term, 1, Integer::sum);
+            }
+        }
+
+        // The trailing trigram of a token is lost as well when it matches a
+        // prefix of the term
+        int minShared = Math.max(1, tokenGrams.size() - GRAM_LENGTH * maxDistance - 1);
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            String term = candidate.getKey();
+            if (candidate.getValue() < minShared || term.length() < token.length() - maxDistance) {
+                continue;
+            }
+            Match match = verify(token, term, maxDistance);
+            if (match != null) {
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return The number of terms in the vocabulary
+     */
+    int size() {
+        return references.size();
+    }
+
+    static int maxDistance(String token) {
+        if (token.length() < MIN_TOKEN_LENGTH) {
+            return 0;
+        }
+        return token.length() < LONG_TOKEN_LENGTH ? 1 : 2;
+    }
+
+    /**
+     * Computes the edit distance between the token and both the whole term and
+     * its closest prefix, using one row of the Levenshtein matrix at a time and
+     * giving up once every cell of a row exceeds the bound.
+     *
+     * @return The closest match, or null if it is further than
+     *         {@code maxDistance}
+     */
+    static Match verify(String token, String term, int maxDistance) {
+        int termLength = term.length();
+        int[] previous = new int[termLength + 1];
+        int[] current = new int[termLength + 1];
+        for (int j = 0; j <= termLength; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= token.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            char tokenChar = token.charAt(i - 1);
+            for (int j = 1; j <= termLength; j++) {
+                int cost = tokenChar == term.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxDistance) {
+                return null;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        // The token is fully consumed: the last cell is the distance to the whole
+        // term, the row minimum the distance to the closest prefix of the term
+        int full = previous[termLength];
+        if (full <= maxDistance) {
+            return new Match(term, full, false);
+        }
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j < termLength; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best <= maxDistance ? new Match(term, best, true) : null;
+    }
+
+    private static List<String> grams(String term) {
+        String padded = "$" + term + "$";
+        List<String> result = new ArrayList<>(Math.max(0, padded.length() - GRAM_LENGTH + 1));
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            result.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single pass HTML to plain text conversion for the rich text PBM columns.
+ * <p>
+ * Tags and comments are dropped, the content of {@code script} and
+ * {@code style} elements is skipped, entities are decoded and every run of
+ * whitespace collapses into one space. Every tag counts as a word break, so
+ * "{@code <li>EN 166</li><li>EN 170</li>}" does not glue the norms together.
+ * No DOM is built; the input is read character by character.
+ */
+public final class HtmlTextExtractor {
+
+    private static final Map<String, String> NAMED_ENTITIES = Map.ofEntries(
+            Map.entry("amp", "&"),
+            Map.entry("lt", "<"),
+            Map.entry("gt", ">"),
+            Map.entry("quot", "\""),
+            Map.entry("apos", "'"),
+            Map.entry("nbsp", " "),
+            Map.entry("euro", "€"),
+            Map.entry("deg", "°"),
+            Map.entry("micro", "µ"),
+            Map.entry("eacute", "é"),
+            Map.entry("egrave", "è"),
+            Map.entry("euml", "ë"),
+            Map.entry("iuml", "ï"),
+            Map.entry("ouml", "ö"),
+            Map.entry("uuml", "ü"),
+            Map.entry("auml", "ä"),
+            Map.entry("ndash", "-"),
+            Map.entry("mdash", "-"),
+            Map.entry("bull", " "),
+            Map.entry("hellip", "..."));
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private HtmlTextExtractor() {
+    }
+
+    /**
+     * Extracts the visible text from an HTML fragment.
+     *
+     * @param html The HTML fragment, may be null
+     * @return The plain text with collapsed whitespace, never null
+     */
+    public static String extract(String html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder text = new StringBuilder(html.length());
+        int length = html.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = html.charAt(i);
+
+            if (c == '<' && isMarkupStart(html, i + 1)) {
+                if (html.startsWith("<!--", i)) {
+                    int end = html.indexOf("-->", i + 4);
+                    i = end < 0 ? length : end + 3;
+                    continue;
+                }
+
+                int end = html.indexOf('>', i + 1);
+                if (end < 0) {
+                    // Not a tag after all, keep the remaining text
+                    appendText(text, html.substring(i));
+                    break;
+                }
+
+                boolean closingTag = html.charAt(i + 1) == '/';
+                String tagName = readTagName(html, i + 1, end);
+                appendSpace(text);
+                i = end + 1;
+
+                if (!closingTag && (tagName.equals("script") || tagName.equals("style"))) {
+                    int close = indexOfIgnoreCase(html, "</" + tagName, i);
+                    i = close < 0 ? length : close;
+                }
+                continue;
+            }
+
+            if (c == '&') {
+                int semicolon = html.indexOf(';', i + 1);
+                if (semicolon > 0 && semicolon - i <= MAX_ENTITY_LENGTH) {
+                    String decoded = decodeEntity(html.substring(i + 1, semicolon));
+                    if (decoded != null) {
+                        appendText(text, decoded);
+                        i = semicolon + 1;
+                        continue;
+                    }
+                }
+            }
+
+            appendChar(text, c);
+            i++;
+        }
+
+        int end = text.length();
+        if (end > 0 && text.charAt(end - 1) == ' ') {
+            text.setLength(end - 1);
+        }
+        return text.toString();
+    }
+
+    private static boolean isMarkupStart(String html, int index) {
+        if (index >= html.length()) {
+            return false;
+        }
+        char next = html.charAt(index);
+        return Character.isLetter(next) || next == '/' || next == '!';
+    }
+
+    private static String readTagName(String html, int start, int end) {
+        int i = start;
+        if (i < end && html.charAt(i) == '/') {
+            i++;
+        }
+        int nameStart = i;
+        while (i < end && Character.isLetterOrDigit(html.charAt(i))) {
+            i++;
+        }
+        return html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+    }
+
+    private static String decodeEntity(String entity) {
+        if (entity.length() > 1 && entity.charAt(0) == '#') {
+            try {
+                int codePoint = entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return NAMED_ENTITIES.get(entity.toLowerCase(Locale.ROOT));
+    }
+
+    private static int indexOfIgnoreCase(String value, String search, int from) {
+        for (int i = from; i <= value.length() - search.length(); i++) {
+            if (value.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendText(StringBuilder text, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            appendChar(text, value.charAt(i));
+        }
+    }
+
+    private static void appendChar(StringBuilder text, char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            appendSpace(text);
+        } else {
+            text.append(c);
+        }
+    }
+
+    private static void appendSpace(StringBuilder text) {
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) != ' ') {
+            text.append(' ');
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link PbmSearchEngine} answering from the in-memory {@link PbmSearchIndex}.
+ */
+@Component
+@ConditionalOnProperty(name = "pbmgids.search.mode", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPbmSearchEngine implements PbmSearchEngine {
+
+    private final PbmSearchService pbmSearchService;
+
+    public InMemoryPbmSearchEngine(PbmSearchService pbmSearchService) {
+        this.pbmSearchService = pbmSearchService;
+    }
+
+    @Override
+    public List<SearchHit> search(String query, SearchScope scope, Integer categoryId, int offset, int limit) {
+        List<SearchHit> hits = pbmSearchService.search(query, scope, categoryId);
+        if (offset >= hits.size()) {
+            return List.of();
+        }
+        return hits.subList(offset, (int) Math.min(hits.size(), (long) offset + limit));
+    }
+}
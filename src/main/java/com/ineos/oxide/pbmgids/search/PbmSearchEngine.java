@@ -0,0 +1,25 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.List;
+
+/**
+ * Executes ranked PBM searches. The implementation is chosen with the
+ * {@code pbmgids.search.mode} property: {@code memory} (the default) answers
+ * from the in-memory index, {@code database} pushes the search down to the
+ * database full-text index.
+ */
+public interface PbmSearchEngine {
+
+    /**
+     * Searches the PBMs within a scope.
+     *
+     * @param query      The raw query text
+     * @param scope      How far the search reaches
+     * @param categoryId The category the scope is relative to, ignored for
+     *                   {@link SearchScope#CATALOG}
+     * @param offset     The number of hits to skip
+     * @param limit      The maximum number of hits to return
+     * @return The ranked hits, best match first
+     */
+    List<SearchHit> search(String query, SearchScope scope, Integer categoryId, int offset, int limit);
+}
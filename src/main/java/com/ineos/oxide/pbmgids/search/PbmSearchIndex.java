@@ -0,0 +1,258 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokenized inverted index over the searchable PBM fields.
+ * <p>
+ * Every term keeps a posting map of PBM id to the best field weight it occurs
+ * in. To keep the substring semantics users are used to (typing "bril" finds
+ * "veiligheidsbril") every suffix of every term is kept in a sorted dictionary,
+ * so a query token is resolved with a single range scan over that dictionary
+ * instead of a scan over the catalog.
+ * <p>
+ * When a query token matches no term at all, it is retried against the terms
+ * of the {@linkplain SearchField#isFuzzy() fuzzy fields} within a small edit
+ * distance, so "handscoen" still finds "handschoen" at a reduced score.
+ * <p>
+ * The popularity of a PBM is folded into its posting weights when it is put,
+ * so results come out ordered by relevance and popularity combined without
+ * any work per query. A changed popularity only rescales those weights.
+ * <p>
+ * Reads and incremental updates are guarded by a read/write lock; full
+ * rebuilds should fill a fresh instance and swap it in.
+ */
+public class PbmSearchIndex {
+    private static final double EXACT_MATCH_FACTOR = 1.0;
+    private static final double PREFIX_MATCH_FACTOR = 0.75;
+    private static final double INFIX_MATCH_FACTOR = 0.5;
+    private static final double FUZZY_MATCH_FACTOR = 0.4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (pbm id -> best field weight, times the popularity boost)
+    private final Map<String, Map<Integer, Double>> postings = new HashMap<>();
+    // suffix -> terms ending with that suffix
+    private final NavigableMap<String, Set<String>> suffixes = new TreeMap<>();
+    // pbm id -> terms, needed to remove a document incrementally
+    private final Map<Integer, Set<String>> documentTerms = new HashMap<>();
+    // pbm id -> terms of the fuzzy fields
+    private final Map<Integer, Set<String>> documentFuzzyTerms = new HashMap<>();
+    // pbm id -> folded name, used as tie breaker
+    private final Map<Integer, String> sortKeys = new HashMap<>();
+    // pbm id -> popularity boost its posting weights carry
+    private final Map<Integer, Double> boosts = new HashMap<>();
+    private final FuzzyTermIndex fuzzyTerms = new FuzzyTermIndex();
+
+    /**
+     * Adds or replaces the document for the given PBM id.
+     *
+     * @param pbmId  The PBM id
+     * @param fields The text per indexed field, null values are skipped
+     * @param hits   The popularity of the PBM
+     */
+    public void put(Integer pbmId, Map<SearchField, String> fields, int hits) {
+        double boost = Popularity.boost(hits);
+        Map<String, Double> terms = new HashMap<>();
+        Set<String> fuzzyTermSet = new HashSet<>();
+        for (Map.Entry<SearchField, String> field : fields.entrySet()) {
+            for (String token : TextNormalizer.tokenize(field.getValue())) {
+                terms.merge(token, field.getKey().getWeight() * boost, Math::max);
+                if (field.getKey().isFuzzy()) {
+                    fuzzyTermSet.add(token);
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(pbmId);
+            for (Map.Entry<String, Double> term : terms.entrySet()) {
+                addPosting(term.getKey(), pbmId, term.getValue());
+            }
+            documentTerms.put(pbmId, new HashSet<>(terms.keySet()));
+            fuzzyTermSet.forEach(fuzzyTerms::add);
+            documentFuzzyTerms.put(pbmId, fuzzyTermSet);
+            sortKeys.put(pbmId, TextNormalizer.fold(fields.get(SearchField.NAME)));
+            boosts.put(pbmId, boost);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the popularity of an indexed PBM by rescaling its posting
+     * weights, without tokenizing its fields again.
+     *
+     * @param pbmId The PBM id, ignored if it is not indexed
+     * @param hits  The new popularity of the PBM
+     */
+    public void updateHits(Integer pbmId, int hits) {
+        double boost = Popularity.boost(hits);
+        lock.writeLock().lock();
+        try {
+            Double previous = boosts.get(pbmId);
+            if (previous == null || previous == boost) {
+                return;
+            }
+            double factor = boost / previous;
+            for (String term : documentTerms.get(pbmId)) {
+                postings.get(term).computeIfPresent(pbmId, (id, weight) -> weight * factor);
+            }
+            boosts.put(pbmId, boost);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the document for the given PBM id, if present.
+     */
+    public void remove(Integer pbmId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(pbmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index. Every query token has to match (as a substring of a
+     * term, or failing that as a near spelling of a fuzzy field term) for a PBM
+     * to be returned.
+     *
+     * @param query The raw query text
+     * @return The hits ordered by descending score, then by name
+     */
+    public List<SearchHit> search(String query) {
+        Set<String> tokens = new LinkedHashSet<>(TextNormalizer.tokenize(query));
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = null;
+            for (String token : tokens) {
+                Map<Integer, Double> tokenScores = matchToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + tokenScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            scores.forEach((id, score) -> hits.add(new SearchHit(id, score)));
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                    .thenComparing(hit -> sortKeys.getOrDefault(hit.pbmId(), "")));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of indexed PBMs
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Double> matchToken(String token) {
+        Map<Integer, Double> matches = new HashMap<>();
+        Set<String> visited = new HashSet<>();
+
+        for (Set<String> terms : suffixes.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+            for (String term : terms) {
+                if (!visited.add(term)) {
+                    continue;
+                }
+                double factor = term.equals(token) ? EXACT_MATCH_FACTOR
+                        : term.startsWith(token) ? PREFIX_MATCH_FACTOR : INFIX_MATCH_FACTOR;
+                postings.get(term).forEach((id, weight) -> matches.merge(id, weight * factor, Math::max));
+            }
+        }
+
+        return matches.isEmpty() ? matchFuzzy(token) : matches;
+    }
+
+    private Map<Integer, Double> matchFuzzy(String token) {
+        Map<Integer, Double> matches = new HashMap<>();
+        for (FuzzyTermIndex.Match match : fuzzyTerms.match(token)) {
+            double factor = FUZZY_MATCH_FACTOR / (match.distance() + 1)
+                    * (match.prefix() ? PREFIX_MATCH_FACTOR : EXACT_MATCH_FACTOR);
+            postings.get(match.term()).forEach((id, weight) -> matches.merge(id, weight * factor, Math::max));
+        }
+        return matches;
+    }
+
+    private void addPosting(String term, Integer pbmId, double weight) {
+        Map<Integer, Double> posting = postings.get(term);
+        if (posting == null) {
+            posting = new HashMap<>();
+            postings.put(term, posting);
+            for (int i = 0; i < term.length(); i++) {
+                suffixes.computeIfAbsent(term.substring(i), key -> new HashSet<>()).add(term);
+            }
+        }
+        posting.put(pbmId, weight);
+    }
+
+    private void removeInternal(Integer pbmId) {
+        Set<String> terms = documentTerms.remove(pbmId);
+        sortKeys.remove(pbmId);
+        boosts.remove(pbmId);
+        Set<String> fuzzyTermSet = documentFuzzyTerms.remove(pbmId);
+        if (fuzzyTermSet != null) {
+            fuzzyTermSet.forEach(fuzzyTerms::remove);
+        }
+        if (terms == null) {
+            return;
+        }
+
+        for (String term : terms) {
+            Map<Integer, Double> posting = postings.get(term);
+            if (posting == null) {
+                continue;
+            }
+            posting.remove(pbmId);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+                for (int i = 0; i < term.length(); i++) {
+                    String suffix = term.substring(i);
+                    Set<String> owners = suffixes.get(suffix);
+                    if (owners != null) {
+                        owners.remove(term);
+                        if (owners.isEmpty()) {
+                            suffixes.remove(suffix);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.categories.CategoryTree;
+import com.ineos.oxide.pbmgids.categories.CategoryTreeChangedEvent;
+import com.ineos.oxide.pbmgids.categories.CategoryTreeService;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.model.projections.CategoryMembership;
+import com.ineos.oxide.pbmgids.model.repositories.PbmRepository;
+import com.ineos.oxide.pbmgids.services.CatalogChangedEvent;
+import com.ineos.oxide.pbmgids.services.PbmHitsFlushedEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Owns the in-memory {@link PbmSearchIndex} and the cached {@link PbmText}
+ * projections it is built from. Both are built on a background thread when
+ * the application is ready and after a complete catalog change, and can
+ * afterwards be refreshed per PBM through {@link #reindex(Collection)}, so
+ * searches never have to load the catalog. Until the first build finished,
+ * searches and scopes answer empty instead of waiting for it.
+ * <p>
+ * The PBM ids of every category, and lazily of every category subtree, are
+ * kept next to the index so a search can be restricted to a
+ * {@link SearchScope} with set lookups only.
+ * <p>
+ * The index holds unpublished PBMs as well, it is loaded with the
+ * {@link PublishedFilter} disabled. Hits are filtered per search for visitors
+ * that only get to see published PBMs.
+ * <p>
+ * In the {@code database} search mode the texts and category memberships are
+ * still kept, suggestions, warehouse numbers and visibility checks are
+ * answered from them, but the index itself is not built.
+ */
+@Service
+public class PbmSearchService {
+    private static final Logger logger = Logger.getLogger(PbmSearchService.class.getName());
+
+    private final PbmRepository pbmRepository;
+    private final CategoryTreeService categoryTreeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PublishedFilter publishedFilter;
+    // Whether searches are answered from the index, see InMemoryPbmSearchEngine
+    private final boolean indexed;
+
+    private volatile PbmSearchIndex index = new PbmSearchIndex();
+    private volatile Map<Integer, PbmText> texts = new ConcurrentHashMap<>();
+    private volatile boolean built;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pbm-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    // category id -> ids of the PBMs linked directly to it
+    private volatile Map<Integer, Set<Integer>> pbmsByCategory = new ConcurrentHashMap<>();
+    // pbm id -> ids of the categories it is linked to
+    private volatile Map<Integer, Set<Integer>> categoriesByPbm = new ConcurrentHashMap<>();
+    // category id -> ids of the PBMs in the category and all its descendants
+    private final Map<Integer, Set<Integer>> subtreeScopes = new ConcurrentHashMap<>();
+
+    public PbmSearchService(PbmRepository pbmRepository, CategoryTreeService categoryTreeService,
+            ApplicationEventPublisher eventPublisher, PublishedFilter publishedFilter,
+            @Value("${pbmgids.search.mode:memory}") String searchMode) {
+        this.pbmRepository = pbmRepository;
+        this.categoryTreeService = categoryTreeService;
+        this.eventPublisher = eventPublisher;
+        this.publishedFilter = publishedFilter;
+        this.indexed = "memory".equals(searchMode);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    /**
+     * Schedules a background rebuild of the index. Requests arriving while a
+     * rebuild is already queued are coalesced into that rebuild.
+     */
+    public void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        try {
+            rebuildIndex();
+        } catch (Exception e) {
+            logger.severe("Error building PBM search index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the complete index from the database and swaps it in atomically.
+     * In the {@code database} search mode only the texts are reloaded.
+     */
+    private synchronized void rebuildIndex() {
+        long start = System.currentTimeMillis();
+
+        List<PbmText> loaded = publishedFilter.readUnfiltered(
+                () -> pbmRepository.findAllWithWarehouseItems().stream().map(PbmText::of).toList());
+        List<CategoryMembership> memberships = publishedFilter
+                .readUnfiltered(pbmRepository::findCategoryMemberships);
+
+        PbmSearchIndex freshIndex = new PbmSearchIndex();
+        Map<Integer, PbmText> freshTexts = new ConcurrentHashMap<>();
+        for (PbmText text : loaded) {
+            freshTexts.put(text.getPbmId(), text);
+            if (indexed) {
+                freshIndex.put(text.getPbmId(), text.toFieldMap(), text.getHits());
+            }
+        }
+
+        Map<Integer, Set<Integer>> freshPbmsByCategory = new ConcurrentHashMap<>();
+        Map<Integer, Set<Integer>> freshCategoriesByPbm = new ConcurrentHashMap<>();
+        for (CategoryMembership membership : memberships) {
+            addMembership(freshPbmsByCategory, freshCategoriesByPbm, membership);
+        }
+
+        this.texts = freshTexts;
+        this.index = freshIndex;
+        this.pbmsByCategory = freshPbmsByCategory;
+        this.categoriesByPbm = freshCategoriesByPbm;
+        subtreeScopes.clear();
+        this.built = true;
+        logger.info((indexed ? "Built PBM search index with " : "Loaded the texts of ") + freshTexts.size()
+                + " PBMs in " + (System.currentTimeMillis() - start) + " ms");
+        eventPublisher.publishEvent(new PbmTextsChangedEvent(Set.of()));
+    }
+
+    /**
+     * Refreshes the given PBMs in the index. Ids that no longer exist in the
+     * database are removed from the index.
+     *
+     * @param pbmIds The ids of the changed PBMs
+     */
+    public synchronized void reindex(Collection<Integer> pbmIds) {
+        if (pbmIds == null || pbmIds.isEmpty()) {
+            return;
+        }
+
+        List<PbmText> loaded = publishedFilter.readUnfiltered(
+                () -> pbmRepository.findAllByIdWithWarehouseItems(pbmIds).stream().map(PbmText::of).toList());
+        List<CategoryMembership> memberships = publishedFilter
+                .readUnfiltered(() -> pbmRepository.findCategoryMembershipsByPbmIds(pbmIds));
+
+        Set<Integer> missing = new HashSet<>(pbmIds);
+        for (PbmText text : loaded) {
+            texts.put(text.getPbmId(), text);
+            if (indexed) {
+                index.put(text.getPbmId(), text.toFieldMap(), text.getHits());
+            }
+            missing.remove(text.getPbmId());
+        }
+        missing.forEach(this::removeInternal);
+
+        pbmIds.forEach(this::removeMemberships);
+        for (CategoryMembership membership : memberships) {
+            addMembership(pbmsByCategory, categoriesByPbm, membership);
+        }
+        subtreeScopes.clear();
+
+        eventPublisher.publishEvent(new PbmTextsChangedEvent(Set.copyOf(pbmIds)));
+    }
+
+    /**
+     * Removes the given PBMs from the index.
+     *
+     * @param pbmIds The ids of the deleted PBMs
+     */
+    public synchronized void remove(Collection<Integer> pbmIds) {
+        if (pbmIds == null || pbmIds.isEmpty()) {
+            return;
+        }
+        pbmIds.forEach(this::removeInternal);
+        pbmIds.forEach(this::removeMemberships);
+        subtreeScopes.clear();
+        eventPublisher.publishEvent(new PbmTextsChangedEvent(Set.copyOf(pbmIds)));
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query The raw query text
+     * @return The ranked hits the current visitor gets to see, best match first;
+     *         none in the {@code database} search mode or before the index is
+     *         built
+     */
+    public List<SearchHit> search(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        if (!built) {
+            scheduleRebuild();
+            return List.of();
+        }
+        List<SearchHit> hits = index.search(query);
+        if (!PublishedFilter.isActive()) {
+            return hits;
+        }
+        return hits.stream()
+                .filter(hit -> isVisible(hit.pbmId()))
+                .toList();
+    }
+
+    /**
+     * @param pbmId The PBM id
+     * @return Whether the current visitor gets to see the PBM
+     */
+    public boolean isVisible(Integer pbmId) {
+        if (!PublishedFilter.isActive()) {
+            return true;
+        }
+        PbmText text = getText(pbmId);
+        return text != null && text.isPublished();
+    }
+
+    /**
+     * Searches the index, keeping only the PBMs within the given scope.
+     *
+     * @param query      The raw query text
+     * @param scope      How far the search reaches
+     * @param categoryId The category the scope is relative to, ignored for
+     *                   {@link SearchScope#CATALOG}
+     * @return The ranked hits within the scope, best match first
+     */
+    public List<SearchHit> search(String query, SearchScope scope, Integer categoryId) {
+        List<SearchHit> hits = search(query);
+        if (scope == SearchScope.CATALOG || categoryId == null) {
+            return hits;
+        }
+
+        Set<Integer> scopePbmIds = getScopePbmIds(scope, categoryId);
+        return hits.stream()
+                .filter(hit -> scopePbmIds.contains(hit.pbmId()))
+                .toList();
+    }
+
+    /**
+     * @param scope      The scope, {@link SearchScope#CATALOG} is not supported
+     * @param categoryId The category the scope is relative to
+     * @return The ids of the PBMs within the scope, published or not; none
+     *         before the index is built
+     */
+    public Set<Integer> getScopePbmIds(SearchScope scope, Integer categoryId) {
+        if (!built) {
+            scheduleRebuild();
+            return Set.of();
+        }
+        if (scope == SearchScope.SUBTREE) {
+            return subtreeScopes.computeIfAbsent(categoryId, this::collectSubtreePbmIds);
+        }
+        return pbmsByCategory.getOrDefault(categoryId, Set.of());
+    }
+
+    /**
+     * @return The cached plain text projections of all indexed PBMs, published
+     *         or not; none before the index is built
+     */
+    public Collection<PbmText> getTexts() {
+        if (!built) {
+            scheduleRebuild();
+            return List.of();
+        }
+        return texts.values();
+    }
+
+    /**
+     * @param pbmId The PBM id
+     * @return The cached plain text projection, or null if the PBM is unknown
+     */
+    public PbmText getText(Integer pbmId) {
+        return pbmId != null ? texts.get(pbmId) : null;
+    }
+
+    /**
+     * @param scope      The scope, {@link SearchScope#CATALOG} is not supported
+     * @param categoryId The category the scope is relative to
+     * @return The ids of the categories within the scope the current visitor
+     *         gets to see
+     */
+    public Set<Integer> getScopeCategoryIds(SearchScope scope, Integer categoryId) {
+        CategoryTree tree = categoryTreeService.getTree();
+        if (scope != SearchScope.SUBTREE) {
+            return !PublishedFilter.isActive() || tree.isPublished(categoryId) ? Set.of(categoryId) : Set.of();
+        }
+        return PublishedFilter.isActive() ? tree.getPublishedSubtreeIds(categoryId)
+                : tree.getSubtreeIds(categoryId);
+    }
+
+    @EventListener
+    public void onCategoryTreeChanged(CategoryTreeChangedEvent event) {
+        subtreeScopes.clear();
+    }
+
+    /**
+     * Adds freshly flushed hits to the cached projections and rescales the
+     * PBMs in the index, without reloading or tokenizing them. The texts
+     * themselves do not change, so no {@link PbmTextsChangedEvent} is
+     * published; suggestions re-rank on their own interval.
+     */
+    @EventListener
+    public synchronized void onHitsFlushed(PbmHitsFlushedEvent event) {
+        if (!built) {
+            return;
+        }
+
+        event.hits().forEach((pbmId, delta) -> {
+            PbmText text = texts.get(pbmId);
+            if (text != null) {
+                PbmText updated = text.withHits((int) Math.min(Integer.MAX_VALUE, text.getHits() + delta));
+                texts.put(pbmId, updated);
+                if (indexed) {
+                    index.updateHits(pbmId, updated.getHits());
+                }
+            }
+        });
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.complete()) {
+            scheduleRebuild();
+        } else if (built && event.pbmsChanged()) {
+            reindex(event.pbmIds());
+        }
+    }
+
+    private void removeInternal(Integer pbmId) {
+        index.remove(pbmId);
+        texts.remove(pbmId);
+    }
+
+    private Set<Integer> collectSubtreePbmIds(Integer categoryId) {
+        Set<Integer> pbmIds = new HashSet<>();
+        // Shared by all visitors, hits are filtered for visibility afterwards
+        for (Integer current : categoryTreeService.getTree().getSubtreeIds(categoryId)) {
+            pbmIds.addAll(pbmsByCategory.getOrDefault(current, Set.of()));
+        }
+        return Set.copyOf(pbmIds);
+    }
+
+    private void removeMemberships(Integer pbmId) {
+        Set<Integer> categoryIds = categoriesByPbm.remove(pbmId);
+        if (categoryIds == null) {
+            return;
+        }
+        for (Integer categoryId : categoryIds) {
+            Set<Integer> members = pbmsByCategory.get(categoryId);
+            if (members != null) {
+                members.remove(pbmId);
+            }
+        }
+    }
+
+    private static void addMembership(Map<Integer, Set<Integer>> pbmsByCategory,
+            Map<Integer, Set<Integer>> categoriesByPbm, CategoryMembership membership) {
+        pbmsByCategory.computeIfAbsent(membership.getCategoryId(), key -> ConcurrentHashMap.newKeySet())
+                .add(membership.getPbmId());
+        categoriesByPbm.computeIfAbsent(membership.getPbmId(), key -> ConcurrentHashMap.newKeySet())
+                .add(membership.getCategoryId());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
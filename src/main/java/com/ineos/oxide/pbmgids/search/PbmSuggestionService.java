@@ -0,0 +1,115 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
+import com.ineos.oxide.pbmgids.services.PbmHitsFlushedEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Serves search box completions from an immutable {@link SuggestionIndex}.
+ * Whenever the cached PBM projections change the index is rebuilt on a
+ * background thread and swapped in atomically; lookups never wait for a
+ * rebuild.
+ * <p>
+ * A second index holds only the published PBMs, for visitors that only get to
+ * see those.
+ * <p>
+ * Flushed hits change the ranking only, so they do not trigger a rebuild each;
+ * the index is re-ranked on its own coarse interval when hits came in.
+ */
+@Service
+public class PbmSuggestionService {
+    private static final Logger logger = Logger.getLogger(PbmSuggestionService.class.getName());
+
+    static final int SUGGESTION_LIMIT = 10;
+
+    private final PbmSearchService pbmSearchService;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pbm-suggestion-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final AtomicBoolean hitsChanged = new AtomicBoolean();
+
+    private volatile SuggestionIndex index = SuggestionIndex.empty(SUGGESTION_LIMIT);
+    private volatile SuggestionIndex publishedIndex = SuggestionIndex.empty(SUGGESTION_LIMIT);
+
+    public PbmSuggestionService(PbmSearchService pbmSearchService) {
+        this.pbmSearchService = pbmSearchService;
+    }
+
+    /**
+     * Returns the best completions for the text typed so far.
+     *
+     * @param prefix The text typed so far
+     * @return At most ten completions, best match first
+     */
+    public List<String> suggest(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return (PublishedFilter.isActive() ? publishedIndex : index).complete(prefix);
+    }
+
+    @EventListener
+    public void onPbmTextsChanged(PbmTextsChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onHitsFlushed(PbmHitsFlushedEvent event) {
+        hitsChanged.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${pbmgids.suggestions.rerank-interval:15m}",
+            initialDelayString = "${pbmgids.suggestions.rerank-interval:15m}")
+    public void rerank() {
+        if (hitsChanged.getAndSet(false)) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Schedules a background rebuild. Requests arriving while a rebuild is
+     * already queued are coalesced into that rebuild.
+     */
+    public void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        try {
+            long start = System.nanoTime();
+            Collection<PbmText> texts = pbmSearchService.getTexts();
+            SuggestionIndex freshIndex = SuggestionIndex.build(texts, SUGGESTION_LIMIT);
+            SuggestionIndex freshPublishedIndex = SuggestionIndex.build(
+                    texts.stream().filter(PbmText::isPublished).toList(), SUGGESTION_LIMIT);
+            this.index = freshIndex;
+            this.publishedIndex = freshPublishedIndex;
+            logger.info("Built suggestion index with " + freshIndex.size() + " completions in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            logger.severe("Error building suggestion index: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ineos.oxide.pbmgids.model.entities.Pbm;
+
+/**
+ * Compact plain text projection of a PBM: one markup free string per
+ * {@link SearchField}. It is produced once per row change and is what search,
+ * suggestions and any other indexing read instead of the entity.
+ */
+public final class PbmText {
+    private static final SearchField[] FIELDS = SearchField.values();
+
+    private final Integer pbmId;
+    private final String[] values;
+    private final int hits;
+    private final boolean published;
+
+    private PbmText(Integer pbmId, String[] values, int hits, boolean published) {
+        this.pbmId = pbmId;
+        this.values = values;
+        this.hits = hits;
+        this.published = published;
+    }
+
+    /**
+     * Creates the projection for a PBM, stripping the HTML of its rich text
+     * columns.
+     *
+     * @param pbm The PBM entity
+     * @return The plain text projection
+     */
+    public static PbmText of(Pbm pbm) {
+        String[] values = new String[FIELDS.length];
+        for (SearchField field : FIELDS) {
+            String raw = field.valueOf(pbm);
+            String plain = field.isHtml() ? HtmlTextExtractor.extract(raw) : raw == null ? "" : raw.strip();
+            values[field.ordinal()] = plain.isEmpty() ? null : plain;
+        }
+        return new PbmText(pbm.getId(), values, pbm.getHits() != null ? pbm.getHits() : 0,
+                Boolean.TRUE.equals(pbm.getPublished()));
+    }
+
+    /**
+     * @param hits The new popularity
+     * @return A copy of this projection with the given popularity
+     */
+    public PbmText withHits(int hits) {
+        return new PbmText(pbmId, values, hits, published);
+    }
+
+    public Integer getPbmId() {
+        return pbmId;
+    }
+
+    /**
+     * @return The plain text of the field, or null when the field is empty
+     */
+    public String get(SearchField field) {
+        return values[field.ordinal()];
+    }
+
+    public String getName() {
+        return get(SearchField.NAME);
+    }
+
+    public String getBrand() {
+        return get(SearchField.BRAND);
+    }
+
+    /**
+     * @return The warehouse numbers of the PBM, empty if it has none
+     */
+    public List<String> getWarehouseNumbers() {
+        String numbers = get(SearchField.WAREHOUSE_NUMBERS);
+        return numbers != null ? List.of(numbers.split(" ")) : List.of();
+    }
+
+    /**
+     * @return The popularity of the PBM at the time the projection was made
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Whether the PBM is shown to visitors that are not logged in
+     */
+    public boolean isPublished() {
+        return published;
+    }
+
+    /**
+     * @return The non empty fields, ready to be put into the search index
+     */
+    public Map<SearchField, String> toFieldMap() {
+        Map<SearchField, String> fields = new EnumMap<>(SearchField.class);
+        for (SearchField field : FIELDS) {
+            String value = values[field.ordinal()];
+            if (value != null) {
+                fields.put(field, value);
+            }
+        }
+        return fields;
+    }
+}
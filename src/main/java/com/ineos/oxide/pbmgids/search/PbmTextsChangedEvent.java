@@ -0,0 +1,16 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Set;
+
+/**
+ * Published by {@link PbmSearchService} after its cached {@link PbmText}
+ * projections changed, so derived structures can refresh themselves.
+ *
+ * @param pbmIds The changed PBM ids, empty after a full rebuild
+ */
+public record PbmTextsChangedEvent(Set<Integer> pbmIds) {
+
+    public boolean isFullRebuild() {
+        return pbmIds.isEmpty();
+    }
+}
@@ -0,0 +1,26 @@
+package com.ineos.oxide.pbmgids.search;
+
+/**
+ * Blends PBM popularity into relevance scores. Every tenfold increase in hits
+ * adds {@value #WEIGHT} to a multiplier of one, up to {@value #MAX_BOOST} at a
+ * million hits. That stays below 4/3, the smallest ratio between two kinds of
+ * match (an exact over a prefix match, a completion of the text start over one
+ * of a later word), so popularity reorders matches of similar relevance but
+ * never lifts a weaker kind of match above a stronger one in the same field.
+ * The database search mode applies the same formula in SQL.
+ */
+final class Popularity {
+    static final double WEIGHT = 0.05;
+    static final double MAX_BOOST = 1.3;
+
+    private Popularity() {
+    }
+
+    /**
+     * @param hits The number of times the PBM was viewed
+     * @return The factor to multiply relevance scores with, 1 for unseen PBMs
+     */
+    static double boost(int hits) {
+        return Math.min(MAX_BOOST, 1.0 + WEIGHT * Math.log10(1.0 + Math.max(0, hits)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.entities.WarehouseItem;
+
+/**
+ * The PBM text fields that are indexed for search, with the weight a match in
+ * that field contributes to the relevance score, whether the column stores
+ * HTML that has to be stripped first and whether its terms take part in typo
+ * tolerant matching. Fuzzy matching is limited to the short identifying fields;
+ * over the long HTML texts it would mostly produce noise.
+ */
+public enum SearchField {
+    NAME(Pbm::getName, 3.0, false, true),
+    BRAND(Pbm::getBrand, 2.0, false, true),
+    TYPE_NAME(Pbm::getTypeName, 2.0, false, true),
+    DESCRIPTION(Pbm::getDescription, 1.0, true, false),
+    PROTECTS_AGAINST(Pbm::getProtectsAgainst, 1.0, true, false),
+    DOES_NOT_PROTECT_AGAINST(Pbm::getDoesNotProtectAgainst, 1.0, true, false),
+    NOTES(Pbm::getNotes, 1.0, true, false),
+    USAGE_INSTRUCTIONS(Pbm::getUsageInstructions, 1.0, true, false),
+    DISTRIBUTION(Pbm::getDistribution, 1.0, true, false),
+    STANDARDS(Pbm::getStandards, 1.0, true, false),
+    WAREHOUSE_NUMBERS(SearchField::joinWarehouseNumbers, 3.0, false, true);
+
+    private final Function<Pbm, String> accessor;
+    private final double weight;
+    private final boolean html;
+    private final boolean fuzzy;
+
+    SearchField(Function<Pbm, String> accessor, double weight, boolean html, boolean fuzzy) {
+        this.accessor = accessor;
+        this.weight = weight;
+        this.html = html;
+        this.fuzzy = fuzzy;
+    }
+
+    public String valueOf(Pbm pbm) {
+        return accessor.apply(pbm);
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    /**
+     * @return Whether misspelled query tokens may match the terms of this field
+     */
+    public boolean isFuzzy() {
+        return fuzzy;
+    }
+
+    private static String joinWarehouseNumbers(Pbm pbm) {
+        if (pbm.getWarehouseItems() == null) {
+            return null;
+        }
+        return pbm.getWarehouseItems().stream()
+                .map(WarehouseItem::getWarehouseNumber)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,8 @@
+package com.ineos.oxide.pbmgids.search;
+
+/**
+ * A single ranked search result: the matching PBM id and its relevance score.
+ * Higher scores rank first.
+ */
+public record SearchHit(Integer pbmId, double score) {
+}
@@ -0,0 +1,20 @@
+package com.ineos.oxide.pbmgids.search;
+
+/**
+ * How far a search from a category view reaches.
+ */
+public enum SearchScope {
+    CATEGORY("This category"),
+    SUBTREE("Including subcategories"),
+    CATALOG("Entire catalog");
+
+    private final String displayName;
+
+    SearchScope(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,228 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable prefix index for search box completions.
+ * <p>
+ * Completion keys (every word start of a name or brand, and every warehouse
+ * number) are kept in one sorted array, so all keys sharing a prefix form a
+ * contiguous range that is found with a binary search. For the short prefixes
+ * that match large ranges the ranked top completions are precomputed, which
+ * acts as the upper levels of a trie; longer prefixes only ever scan a handful
+ * of keys.
+ * <p>
+ * Every key carries a precomputed score: how well it represents its completion
+ * (the start of the text beats a later word, which beats a zero stripped
+ * warehouse number) times the {@link Popularity} boost of the PBM hits. A
+ * completion reached through several keys in the range ranks with its best
+ * one.
+ */
+public class SuggestionIndex {
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 3;
+
+    private static final double TEXT_START_RELEVANCE = 1.0;
+    private static final double WORD_START_RELEVANCE = 0.75;
+    private static final double UNPADDED_RELEVANCE = 0.5;
+
+    private final int limit;
+    private final String[] keys;
+    private final int[] keySuggestions;
+    private final double[] keyScores;
+    private final Suggestion[] suggestions;
+    private final Map<String, List<String>> precomputed;
+
+    private record Suggestion(String text, int hits) {
+    }
+
+    private record Key(String key, int suggestion, double score) {
+    }
+
+    private record Candidate(int suggestion, double score) {
+    }
+
+    private SuggestionIndex(int limit, String[] keys, int[] keySuggestions, double[] keyScores,
+            Suggestion[] suggestions) {
+        this.limit = limit;
+        this.keys = keys;
+        this.keySuggestions = keySuggestions;
+        this.keyScores = keyScores;
+        this.suggestions = suggestions;
+        this.precomputed = precompute();
+    }
+
+    /**
+     * Builds the index from the cached PBM projections.
+     *
+     * @param texts The plain text projections of all PBMs
+     * @param limit The maximum number of completions returned per prefix
+     * @return The immutable index
+     */
+    public static SuggestionIndex build(Collection<PbmText> texts, int limit) {
+        // One suggestion per distinct text, keeping the best hit count
+        Map<String, Integer> hitsByText = new LinkedHashMap<>();
+        for (PbmText text : texts) {
+            addText(hitsByText, text.getName(), text.getHits());
+            addText(hitsByText, text.getBrand(), text.getHits());
+            for (String warehouseNumber : text.getWarehouseNumbers()) {
+                addText(hitsByText, warehouseNumber, text.getHits());
+            }
+        }
+
+        Suggestion[] suggestions = new Suggestion[hitsByText.size()];
+        List<Key> keyEntries = new ArrayList<>();
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : hitsByText.entrySet()) {
+            suggestions[index] = new Suggestion(entry.getKey(), entry.getValue());
+            addCompletionKeys(keyEntries, entry.getKey(), index, Popularity.boost(entry.getValue()));
+            index++;
+        }
+        keyEntries.sort(Comparator.comparing(Key::key));
+
+        String[] keys = new String[keyEntries.size()];
+        int[] keySuggestions = new int[keyEntries.size()];
+        double[] keyScores = new double[keyEntries.size()];
+        for (int i = 0; i < keyEntries.size(); i++) {
+            keys[i] = keyEntries.get(i).key();
+            keySuggestions[i] = keyEntries.get(i).suggestion();
+            keyScores[i] = keyEntries.get(i).score();
+        }
+
+        return new SuggestionIndex(limit, keys, keySuggestions, keyScores, suggestions);
+    }
+
+    /**
+     * @return An index without completions
+     */
+    public static SuggestionIndex empty(int limit) {
+        return new SuggestionIndex(limit, new String[0], new int[0], new double[0], new Suggestion[0]);
+    }
+
+    /**
+     * Returns the best completions for the given prefix.
+     *
+     * @param prefix The text typed so far
+     * @return At most {@code limit} completions, best first
+     */
+    public List<String> complete(String prefix) {
+        String key = TextNormalizer.fold(prefix).strip();
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        if (key.length() <= PRECOMPUTED_PREFIX_LENGTH) {
+            return precomputed.getOrDefault(key, List.of());
+        }
+        return rank(key, lowerBound(key));
+    }
+
+    /**
+     * @return The number of distinct completions in the index
+     */
+    public int size() {
+        return suggestions.length;
+    }
+
+    private Map<String, List<String>> precompute() {
+        Map<String, List<String>> result = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            for (int length = 1; length <= Math.min(PRECOMPUTED_PREFIX_LENGTH, keys[i].length()); length++) {
+                String prefix = keys[i].substring(0, length);
+                if (!result.containsKey(prefix)) {
+                    // Keys are sorted, so this is the start of the prefix range
+                    result.put(prefix, rank(prefix, i));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<String> rank(String prefix, int start) {
+        // Small bounded selection: the range is short for all but the
+        // precomputed prefixes
+        List<Candidate> best = new ArrayList<>(limit + 1);
+        for (int i = start; i < keys.length && keys[i].startsWith(prefix); i++) {
+            Candidate candidate = new Candidate(keySuggestions[i], keyScores[i]);
+
+            int existing = 0;
+            while (existing < best.size() && best.get(existing).suggestion() != candidate.suggestion()) {
+                existing++;
+            }
+            if (existing < best.size()) {
+                if (compare(best.get(existing), candidate) <= 0) {
+                    continue;
+                }
+                best.remove(existing);
+            }
+
+            if (best.size() == limit && compare(candidate, best.get(limit - 1)) >= 0) {
+                continue;
+            }
+            int position = 0;
+            while (position < best.size() && compare(best.get(position), candidate) <= 0) {
+                position++;
+            }
+            best.add(position, candidate);
+            if (best.size() > limit) {
+                best.remove(limit);
+            }
+        }
+        return best.stream().map(candidate -> suggestions[candidate.suggestion()].text()).toList();
+    }
+
+    private int compare(Candidate first, Candidate second) {
+        int byScore = Double.compare(second.score(), first.score());
+        if (byScore != 0) {
+            return byScore;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(suggestions[first.suggestion()].text(),
+                suggestions[second.suggestion()].text());
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void addText(Map<String, Integer> hitsByText, String text, int hits) {
+        if (text != null && !text.isBlank()) {
+            hitsByText.merge(text.strip(), hits, Math::max);
+        }
+    }
+
+    private static void addCompletionKeys(List<Key> keys, String text, int suggestion, double boost) {
+        // The folded text from every word start, so "Nitril handschoen" completes
+        // on "nit" as well as on "hand"
+        String folded = TextNormalizer.fold(text);
+        double relevance = TEXT_START_RELEVANCE;
+        for (int i = 0; i < folded.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(folded.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(folded.charAt(i))) {
+                keys.add(new Key(folded.substring(i), suggestion, relevance * boost));
+                relevance = WORD_START_RELEVANCE;
+            }
+        }
+
+        // SAP material numbers are zero padded; also complete on the significant
+        // digits
+        String unpadded = folded.replaceFirst("^0+(?=\\d)", "");
+        if (unpadded.length() < folded.length()) {
+            keys.add(new Key(unpadded, suggestion, UNPADDED_RELEVANCE * boost));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Case and accent folding plus tokenization shared by the search index and the
+ * queries run against it, so both sides always agree on what a term is.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Lower-cases the value and strips diacritics ("Veiligheidsbril Ü" becomes
+     * "veiligheidsbril u").
+     *
+     * @param value The raw text, may be null
+     * @return The folded text, never null
+     */
+    public static String fold(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits the value into folded tokens on every character that is not a
+     * letter or digit.
+     *
+     * @param value The raw text, may be null
+     * @return The tokens in order of appearance, possibly with duplicates
+     */
+    public static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        String folded = fold(value);
+
+        int start = -1;
+        for (int i = 0; i < folded.length(); i++) {
+            if (Character.isLetterOrDigit(folded.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(folded.substring(start));
+        }
+
+        return tokens;
+    }
+}
@@ -0,0 +1,234 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable lookup index from warehouse (SAP material) number to PBM.
+ * <p>
+ * Numeric warehouse numbers, which is nearly all of them, are stored as
+ * {@code long} keys in an open addressing hash table, so an exact lookup is a
+ * couple of array reads without boxing or string hashing. Leading zeros are not
+ * significant: "000000000000123456" and "123456" are the same key. The rare
+ * non numeric number falls back to a regular map. For prefix lookups all
+ * normalized numbers are also kept in a sorted array.
+ */
+public final class WarehouseNumberIndex {
+    private static final long EMPTY_KEY = -1L;
+    private static final int MAX_NUMERIC_LENGTH = 18;
+
+    private final long[] keys;
+    private final int[][] values;
+    private final int mask;
+    private final Map<String, int[]> textKeys;
+    private final int size;
+
+    private final String[] sortedNumbers;
+    private final String[] sortedDisplayNumbers;
+    private final int[] sortedPbmIds;
+
+    /**
+     * A warehouse number with the PBM it belongs to.
+     *
+     * @param warehouseNumber The warehouse number as stored
+     * @param pbmId           The PBM id
+     */
+    public record Entry(String warehouseNumber, int pbmId) {
+    }
+
+    private WarehouseNumberIndex(Map<String, List<Entry>> entriesByNumber) {
+        int capacity = Integer.highestOneBit(Math.max(2, entriesByNumber.size() * 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity][];
+        this.mask = capacity - 1;
+        this.textKeys = new HashMap<>();
+        this.size = entriesByNumber.size();
+        Arrays.fill(keys, EMPTY_KEY);
+
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<>();
+        for (Map.Entry<String, List<Entry>> number : entriesByNumber.entrySet()) {
+            int[] pbmIds = number.getValue().stream().mapToInt(Entry::pbmId).distinct().toArray();
+            long key = numericKey(number.getKey());
+            if (key != EMPTY_KEY) {
+                int slot = slot(key);
+                keys[slot] = key;
+                values[slot] = pbmIds;
+            } else {
+                textKeys.put(number.getKey(), pbmIds);
+            }
+            number.getValue().forEach(entry -> sorted.add(Map.entry(number.getKey(), entry)));
+        }
+
+        sorted.sort(Map.Entry.<String, Entry>comparingByKey()
+                .thenComparing(entry -> entry.getValue().pbmId(), Comparator.naturalOrder()));
+        this.sortedNumbers = new String[sorted.size()];
+        this.sortedDisplayNumbers = new String[sorted.size()];
+        this.sortedPbmIds = new int[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            sortedNumbers[i] = sorted.get(i).getKey();
+            sortedDisplayNumbers[i] = sorted.get(i).getValue().warehouseNumber();
+            sortedPbmIds[i] = sorted.get(i).getValue().pbmId();
+        }
+    }
+
+    /**
+     * Builds the index from the cached PBM projections.
+     *
+     * @param texts The plain text projections of all PBMs
+     * @return The immutable index
+     */
+    public static WarehouseNumberIndex build(Collection<PbmText> texts) {
+        Map<String, List<Entry>> entriesByNumber = new LinkedHashMap<>();
+        for (PbmText text : texts) {
+            for (String warehouseNumber : text.getWarehouseNumbers()) {
+                String normalized = normalize(warehouseNumber);
+                if (!normalized.isEmpty()) {
+                    entriesByNumber.computeIfAbsent(normalized, key -> new ArrayList<>())
+                            .add(new Entry(warehouseNumber.strip(), text.getPbmId()));
+                }
+            }
+        }
+        return new WarehouseNumberIndex(entriesByNumber);
+    }
+
+    /**
+     * @return An index without warehouse numbers
+     */
+    public static WarehouseNumberIndex empty() {
+        return new WarehouseNumberIndex(Map.of());
+    }
+
+    /**
+     * Looks up the PBMs carrying exactly the given warehouse number.
+     *
+     * @param warehouseNumber The warehouse number, with or without leading zeros
+     * @return The PBM ids, empty if the number is unknown
+     */
+    public int[] lookup(String warehouseNumber) {
+        String normalized = normalize(warehouseNumber);
+        if (normalized.isEmpty()) {
+            return new int[0];
+        }
+
+        long key = numericKey(normalized);
+        if (key == EMPTY_KEY) {
+            int[] pbmIds = textKeys.get(normalized);
+            return pbmIds != null ? pbmIds.clone() : new int[0];
+        }
+
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot].clone();
+            }
+            if (keys[slot] == EMPTY_KEY) {
+                return new int[0];
+            }
+        }
+    }
+
+    /**
+     * Looks up the warehouse numbers starting with the given prefix.
+     *
+     * @param prefix  The start of the warehouse number, leading zeros are
+     *                ignored
+     * @param limit   The maximum number of entries to return
+     * @param visible Which PBM ids may be returned, tested before the limit
+     *                applies
+     * @return The matching entries in warehouse number order
+     */
+    public List<Entry> findByPrefix(String prefix, int limit, IntPredicate visible) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        List<Entry> result = new ArrayList<>();
+        for (int i = lowerBound(normalized); i < sortedNumbers.length && result.size() < limit
+                && sortedNumbers[i].startsWith(normalized); i++) {
+            if (visible.test(sortedPbmIds[i])) {
+                result.add(new Entry(sortedDisplayNumbers[i], sortedPbmIds[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of distinct warehouse numbers in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Normalizes a warehouse number: surrounding whitespace is dropped, numeric
+     * numbers lose their leading zeros and everything else is folded.
+     *
+     * @param warehouseNumber The raw warehouse number, may be null
+     * @return The normalized number, empty if there is none
+     */
+    static String normalize(String warehouseNumber) {
+        if (warehouseNumber == null) {
+            return "";
+        }
+        String stripped = warehouseNumber.strip();
+        if (isDigits(stripped)) {
+            return stripped.replaceFirst("^0+(?=\\d)", "");
+        }
+        return TextNormalizer.fold(stripped);
+    }
+
+    private int slot(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = sortedNumbers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNumbers[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long numericKey(String normalized) {
+        if (normalized.length() > MAX_NUMERIC_LENGTH || !isDigits(normalized)) {
+            return EMPTY_KEY;
+        }
+        return Long.parseLong(normalized);
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int hash(long key) {
+        // Spread sequential material numbers over the table
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,11 @@
+package com.ineos.oxide.pbmgids.search;
+
+/**
+ * A warehouse number resolved to the PBM it belongs to.
+ *
+ * @param warehouseNumber The warehouse number
+ * @param pbmId           The PBM id
+ * @param pbmName         The PBM name
+ */
+public record WarehouseNumberMatch(String warehouseNumber, Integer pbmId, String pbmName) {
+}
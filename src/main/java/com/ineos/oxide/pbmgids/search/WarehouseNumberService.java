@@ -0,0 +1,97 @@
+package com.ineos.oxide.pbmgids.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves warehouse (SAP material) numbers, as typed in the search box or
+ * scanned at the stores, to PBMs from an in-memory {@link WarehouseNumberIndex}.
+ * The index is rebuilt from the cached PBM projections whenever they change.
+ * It holds unpublished PBMs as well, the lookups only return the PBMs the
+ * current visitor gets to see.
+ */
+@Service
+public class WarehouseNumberService {
+    private static final Logger logger = Logger.getLogger(WarehouseNumberService.class.getName());
+
+    /**
+     * The score of an exact warehouse number match, above any text relevance
+     * score so the scanned item always comes first.
+     */
+    public static final double EXACT_MATCH_SCORE = 100.0;
+
+    private final PbmSearchService pbmSearchService;
+
+    private volatile WarehouseNumberIndex index = WarehouseNumberIndex.empty();
+
+    public WarehouseNumberService(PbmSearchService pbmSearchService) {
+        this.pbmSearchService = pbmSearchService;
+    }
+
+    /**
+     * @param warehouseNumber The warehouse number, with or without leading zeros
+     * @return The ids of the PBMs carrying exactly this number
+     */
+    public List<Integer> findPbmIds(String warehouseNumber) {
+        return Arrays.stream(index.lookup(warehouseNumber)).boxed()
+                .filter(pbmSearchService::isVisible)
+                .toList();
+    }
+
+    /**
+     * @param warehouseNumber The warehouse number, with or without leading zeros
+     * @param scope           How far the search reaches
+     * @param categoryId      The category the scope is relative to, ignored for
+     *                        {@link SearchScope#CATALOG}
+     * @return The ids of the PBMs within the scope carrying exactly this number
+     */
+    public List<Integer> findPbmIds(String warehouseNumber, SearchScope scope, Integer categoryId) {
+        List<Integer> pbmIds = findPbmIds(warehouseNumber);
+        if (pbmIds.isEmpty() || scope == SearchScope.CATALOG || categoryId == null) {
+            return pbmIds;
+        }
+
+        Set<Integer> scopePbmIds = pbmSearchService.getScopePbmIds(scope, categoryId);
+        return pbmIds.stream().filter(scopePbmIds::contains).toList();
+    }
+
+    /**
+     * @param prefix The start of the warehouse number
+     * @param limit  The maximum number of matches
+     * @return The warehouse numbers starting with the prefix, in number order
+     */
+    public List<WarehouseNumberMatch> findByPrefix(String prefix, int limit) {
+        return index.findByPrefix(prefix, limit, pbmSearchService::isVisible).stream()
+                .map(entry -> toMatch(entry.warehouseNumber(), entry.pbmId()))
+                .toList();
+    }
+
+    /**
+     * @param warehouseNumber The warehouse number, with or without leading zeros
+     * @return The PBMs carrying exactly this number
+     */
+    public List<WarehouseNumberMatch> findMatches(String warehouseNumber) {
+        return findPbmIds(warehouseNumber).stream()
+                .map(pbmId -> toMatch(warehouseNumber.strip(), pbmId))
+                .toList();
+    }
+
+    @EventListener
+    public void onPbmTextsChanged(PbmTextsChangedEvent event) {
+        long start = System.nanoTime();
+        WarehouseNumberIndex freshIndex = WarehouseNumberIndex.build(pbmSearchService.getTexts());
+        this.index = freshIndex;
+        logger.fine("Built warehouse number index with " + freshIndex.size() + " numbers in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private WarehouseNumberMatch toMatch(String warehouseNumber, int pbmId) {
+        PbmText text = pbmSearchService.getText(pbmId);
+        return new WarehouseNumberMatch(warehouseNumber, pbmId, text != null ? text.getName() : null);
+    }
+}
@@ -0,0 +1,287 @@
+package com.ineos.oxide.pbmgids.services;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks up catalog edits made directly in the database by other tools and
+ * publishes them as a {@link CatalogChangedEvent}, so caches and indexes
+ * refresh only the changed rows.
+ * <p>
+ * Every watched table has a {@code last_modified} column that the database
+ * bumps on every update. The poller keeps a watermark per table and asks for
+ * the rows modified since the watermark minus an overlap window: a row is
+ * stamped when it is updated but only visible once its transaction commits,
+ * which may be after a poll already moved the watermark past its timestamp.
+ * The (id, last_modified) pairs seen within the window are remembered, so a
+ * row is reported again only when it is modified again.
+ * <p>
+ * Deleted rows leave no timestamp behind, so the row count and id sum of
+ * every table are compared as well and the ids are diffed when they moved.
+ * <p>
+ * The link tables between PBMs and their categories, norms and documents, and
+ * the document table, have no {@code last_modified} column. The poller keeps
+ * a hash of every row of those, and the row count and hash sum of the table;
+ * when the sums move the rows are diffed and the PBMs of the changed rows are
+ * reported.
+ */
+@Component
+@ConditionalOnProperty(name = "pbmgids.change-poller.enabled", havingValue = "true")
+public class CatalogChangePoller {
+    private static final Logger logger = Logger.getLogger(CatalogChangePoller.class.getName());
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long overlapMillis;
+
+    private final TableState pbms = new TableState("pbm");
+    private final TableState categories = new TableState("category");
+    private final TableState norms = new TableState("norm");
+    private final TableState warehouseItems = new TableState("warehouse_item");
+    // A link row is keyed by its PBM id in the upper and the linked id in the
+    // lower 32 bits
+    private final RowSetState pbmCategories = new RowSetState("pbm_category",
+            "pbm_id * 4294967296 + category_id", "0");
+    private final RowSetState pbmNorms = new RowSetState("pbm_norm", "pbm_id * 4294967296 + norm_id", "0");
+    private final RowSetState pbmDocuments = new RowSetState("pbm_document",
+            "pbm_id * 4294967296 + document_id", "0");
+    private final RowSetState documents = new RowSetState("document", "id",
+            "crc32(concat_ws(':', document_type, file_path, mime_type, file_size, description, modified_on))");
+
+    public CatalogChangePoller(NamedParameterJdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+            @Value("${pbmgids.change-poller.overlap:60s}") Duration overlap) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.overlapMillis = overlap.toMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${pbmgids.change-poller.interval:30s}")
+    public void poll() {
+        try {
+            if (!pbms.initialized) {
+                // Start from the current state; everything before is already
+                // loaded by the caches and indexes
+                for (TableState table : List.of(pbms, categories, norms, warehouseItems)) {
+                    initialize(table);
+                }
+                for (RowSetState table : List.of(pbmCategories, pbmNorms, pbmDocuments, documents)) {
+                    table.rows = loadRows(table);
+                    table.checksum = checksum(table);
+                }
+                return;
+            }
+
+            Set<Integer> pbmIds = new LinkedHashSet<>();
+            Set<Integer> categoryIds = new LinkedHashSet<>();
+
+            pbmIds.addAll(modifiedIds(pbms, "id"));
+            pbmIds.addAll(deletedIds(pbms));
+            categoryIds.addAll(modifiedIds(categories, "id"));
+            categoryIds.addAll(deletedIds(categories));
+
+            Set<Integer> normIds = modifiedIds(norms, "id");
+            if (!normIds.isEmpty()) {
+                pbmIds.addAll(jdbcTemplate.queryForList(
+                        "select distinct pbm_id from pbm_norm where norm_id in (:ids)",
+                        new MapSqlParameterSource("ids", normIds), Integer.class));
+            }
+            pbmIds.addAll(modifiedIds(warehouseItems, "pbm_id"));
+
+            for (RowSetState links : List.of(pbmCategories, pbmNorms, pbmDocuments)) {
+                changedKeys(links).forEach(key -> pbmIds.add((int) (key >>> 32)));
+            }
+            // A deleted document takes its links along, which the diff of
+            // pbm_document reports
+            Set<Integer> documentIds = new HashSet<>();
+            changedKeys(documents).forEach(key -> documentIds.add(key.intValue()));
+            if (!documentIds.isEmpty()) {
+                pbmIds.addAll(jdbcTemplate.queryForList(
+                        "select distinct pbm_id from pbm_document where document_id in (:ids)",
+                        new MapSqlParameterSource("ids", documentIds), Integer.class));
+            }
+
+            // The PBM a deleted norm or warehouse item belonged to is gone
+            // with the row
+            boolean normsDeleted = !deletedIds(norms).isEmpty();
+            boolean warehouseItemsDeleted = !deletedIds(warehouseItems).isEmpty();
+            boolean complete = normsDeleted || warehouseItemsDeleted;
+
+            if (complete || !pbmIds.isEmpty() || !categoryIds.isEmpty()) {
+                logger.info("Detected catalog changes: " + pbmIds.size() + " PBMs, " + categoryIds.size()
+                        + " categories" + (complete ? ", reloading everything" : ""));
+                eventPublisher.publishEvent(complete ? CatalogChangedEvent.all()
+                        : new CatalogChangedEvent(Set.copyOf(pbmIds), Set.copyOf(categoryIds), false));
+            }
+        } catch (Exception e) {
+            logger.severe("Error polling catalog changes: " + e.getMessage());
+        }
+    }
+
+    private void initialize(TableState table) {
+        table.watermark = jdbcTemplate.queryForObject("select max(last_modified) from " + table.name,
+                new MapSqlParameterSource(), Timestamp.class);
+        if (table.watermark != null) {
+            jdbcTemplate.query("select id, last_modified from " + table.name + " where last_modified >= :from",
+                    new MapSqlParameterSource("from", windowStart(table)),
+                    row -> {
+                        table.seen.put(row.getInt("id"), row.getTimestamp("last_modified"));
+                    });
+        }
+        table.ids = loadIds(table);
+        table.checksum = checksum(table);
+        table.initialized = true;
+    }
+
+    /**
+     * Collects the rows modified since the start of the overlap window that
+     * were not reported with the same timestamp before, and moves the
+     * watermark forward.
+     *
+     * @param column The column to report for the modified rows
+     * @return The values of the column for the modified rows
+     */
+    private Set<Integer> modifiedIds(TableState table, String column) {
+        String sql = "select id, " + column + " as reported, last_modified from " + table.name
+                + (table.watermark != null ? " where last_modified >= :from" : "");
+        Set<Integer> result = new LinkedHashSet<>();
+        jdbcTemplate.query(sql, new MapSqlParameterSource("from", windowStart(table)), row -> {
+            int id = row.getInt("id");
+            Timestamp lastModified = row.getTimestamp("last_modified");
+            if (lastModified.equals(table.seen.put(id, lastModified))) {
+                return;
+            }
+            if (table.watermark == null || lastModified.after(table.watermark)) {
+                table.watermark = lastModified;
+            }
+            result.add(row.getInt("reported"));
+        });
+
+        Timestamp windowStart = windowStart(table);
+        if (windowStart != null) {
+            table.seen.values().removeIf(lastModified -> lastModified.before(windowStart));
+        }
+        return result;
+    }
+
+    private Timestamp windowStart(TableState table) {
+        return table.watermark != null ? new Timestamp(table.watermark.getTime() - overlapMillis) : null;
+    }
+
+    /**
+     * @return The ids deleted from the table since the last poll
+     */
+    private Set<Integer> deletedIds(TableState table) {
+        long[] checksum = checksum(table);
+        if (checksum[0] == table.checksum[0] && checksum[1] == table.checksum[1]) {
+            return Set.of();
+        }
+
+        Set<Integer> ids = loadIds(table);
+        Set<Integer> deleted = new HashSet<>(table.ids);
+        deleted.removeAll(ids);
+        table.ids = ids;
+        table.checksum = checksum;
+        return deleted;
+    }
+
+    private long[] checksum(TableState table) {
+        return jdbcTemplate.queryForObject("select count(*), coalesce(sum(id), 0) from " + table.name,
+                new MapSqlParameterSource(), (row, rowNum) -> new long[] { row.getLong(1), row.getLong(2) });
+    }
+
+    private Set<Integer> loadIds(TableState table) {
+        return new HashSet<>(jdbcTemplate.queryForList("select id from " + table.name,
+                new MapSqlParameterSource(), Integer.class));
+    }
+
+    /**
+     * @return The keys of the rows added, deleted or changed since the last
+     *         poll
+     */
+    private Set<Long> changedKeys(RowSetState table) {
+        long[] checksum = checksum(table);
+        if (checksum[0] == table.checksum[0] && checksum[1] == table.checksum[1]) {
+            return Set.of();
+        }
+
+        Map<Long, Long> rows = loadRows(table);
+        Set<Long> changed = new HashSet<>();
+        table.rows.forEach((key, hash) -> {
+            if (!hash.equals(rows.get(key))) {
+                changed.add(key);
+            }
+        });
+        rows.keySet().stream().filter(key -> !table.rows.containsKey(key)).forEach(changed::add);
+        table.rows = rows;
+        table.checksum = checksum;
+        return changed;
+    }
+
+    private long[] checksum(RowSetState table) {
+        return jdbcTemplate.queryForObject("select count(*), coalesce(sum(crc32(concat_ws(':', " + table.key + ", "
+                + table.hash + "))), 0) from " + table.name,
+                new MapSqlParameterSource(), (row, rowNum) -> new long[] { row.getLong(1), row.getLong(2) });
+    }
+
+    private Map<Long, Long> loadRows(RowSetState table) {
+        Map<Long, Long> rows = new HashMap<>();
+        jdbcTemplate.query("select " + table.key + " as row_key, " + table.hash + " as row_hash from " + table.name,
+                new MapSqlParameterSource(), row -> {
+                    rows.put(row.getLong("row_key"), row.getLong("row_hash"));
+                });
+        return rows;
+    }
+
+    /**
+     * What the poller knows about one watched table. Only touched by the
+     * single scheduler thread.
+     */
+    private static final class TableState {
+        private final String name;
+        // id -> last_modified of the rows reported within the overlap window
+        private final Map<Integer, Timestamp> seen = new HashMap<>();
+        private boolean initialized;
+        private Timestamp watermark;
+        private Set<Integer> ids = Set.of();
+        private long[] checksum = { 0, 0 };
+
+        private TableState(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * What the poller knows about one watched table without a
+     * {@code last_modified} column. Only touched by the single scheduler
+     * thread.
+     */
+    private static final class RowSetState {
+        private final String name;
+        // SQL expressions for the key and the content hash of a row
+        private final String key;
+        private final String hash;
+        private Map<Long, Long> rows = Map.of();
+        private long[] checksum = { 0, 0 };
+
+        private RowSetState(String name, String key, String hash) {
+            this.name = name;
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ineos.oxide.pbmgids.services;
+
+import java.util.Set;
+
+/**
+ * Published after catalog data was changed, so every cache derived from it can
+ * evict or rebuild itself.
+ *
+ * @param pbmIds      The ids of the PBMs that changed, or whose documents,
+ *                    norms or warehouse items changed, including deleted PBMs
+ * @param categoryIds The ids of the changed categories, including deleted ones
+ * @param complete    Whether the extent of the change is unknown, so everything
+ *                    derived from the catalog has to be reloaded
+ */
+public record CatalogChangedEvent(Set<Integer> pbmIds, Set<Integer> categoryIds, boolean complete) {
+
+    /**
+     * @return An event for a change of unknown extent
+     */
+    public static CatalogChangedEvent all() {
+        return new CatalogChangedEvent(Set.of(), Set.of(), true);
+    }
+
+    public boolean pbmsChanged() {
+        return complete || !pbmIds.isEmpty();
+    }
+
+    public boolean categoriesChanged() {
+        return complete || !categoryIds.isEmpty();
+    }
+}
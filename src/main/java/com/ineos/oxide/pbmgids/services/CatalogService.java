@@ -3,277 +3,318 @@ package com.ineos.oxide.pbmgids.services;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.ineos.oxide.pbmgids.cache.CatalogCaches;
+import com.ineos.oxide.pbmgids.categories.CategoryTree;
+import com.ineos.oxide.pbmgids.categories.CategoryTreeService;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
 import com.ineos.oxide.pbmgids.model.entities.Category;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 import com.ineos.oxide.pbmgids.model.repositories.CategoryRepository;
+import com.ineos.oxide.pbmgids.model.repositories.OffsetPageRequest;
 import com.ineos.oxide.pbmgids.model.repositories.PbmRepository;
-
+import com.ineos.oxide.pbmgids.search.PbmSearchEngine;
+import com.ineos.oxide.pbmgids.search.PbmSuggestionService;
+import com.ineos.oxide.pbmgids.search.SearchHit;
+import com.ineos.oxide.pbmgids.search.SearchScope;
+import com.ineos.oxide.pbmgids.search.WarehouseNumberService;
+
+/**
+ * Read access to the catalog. The plain lookups used on every navigation are
+ * cached per method (see {@link CatalogCaches}); concurrent misses for the
+ * same key wait for a single load. The caches are evicted on a
+ * {@link CatalogChangedEvent}.
+ * <p>
+ * Visitors that are not logged in only get to see published data: the
+ * {@link PublishedFilter} is part of the SQL of every entity query, and is
+ * applied to the category tree and to the search index here.
+ */
 @Service
+@CacheConfig(keyGenerator = CatalogCaches.KEY_GENERATOR)
 @Transactional(readOnly = true)
 public class CatalogService {
     private final CategoryRepository categoryRepository;
     private final PbmRepository pbmRepository;
-
-    public CatalogService(CategoryRepository categoryRepository, PbmRepository pbmRepository) {
+    private final PbmSearchEngine pbmSearchEngine;
+    private final PbmSuggestionService pbmSuggestionService;
+    private final WarehouseNumberService warehouseNumberService;
+    private final CategoryTreeService categoryTreeService;
+    private final PbmHitCounter pbmHitCounter;
+
+    public CatalogService(CategoryRepository categoryRepository, PbmRepository pbmRepository,
+            PbmSearchEngine pbmSearchEngine, PbmSuggestionService pbmSuggestionService,
+            WarehouseNumberService warehouseNumberService, CategoryTreeService categoryTreeService,
+            PbmHitCounter pbmHitCounter) {
         this.categoryRepository = categoryRepository;
         this.pbmRepository = pbmRepository;
+        this.pbmSearchEngine = pbmSearchEngine;
+        this.pbmSuggestionService = pbmSuggestionService;
+        this.warehouseNumberService = warehouseNumberService;
+        this.categoryTreeService = categoryTreeService;
+        this.pbmHitCounter = pbmHitCounter;
     }
 
-    public List<Category> getRootCategories() {
-        return categoryRepository.findRootCategories();
+    @Cacheable(cacheNames = CatalogCaches.PBM, sync = true)
+    public Pbm getPbm(Integer id) {
+        Pbm pbm = pbmRepository.findById(id).orElse(null);
+        if (pbm != null) {
+            fetchRelations(List.of(pbm));
+        }
+        return pbm;
     }
 
-    public List<Pbm> getByCategory(Integer categoryId) {
-        return pbmRepository.findByCategoryIdWithRelations(categoryId);
-    }
+    /**
+     * Initializes the categories, documents, norms and warehouse items of the
+     * given PBMs with one query per association, keyed by PBM id. Must run in
+     * the transaction that loaded the PBMs.
+     * 
+     * @param pbms The managed PBM entities
+     */
+    private void fetchRelations(List<Pbm> pbms) {
+        if (pbms.isEmpty()) {
+            return;
+        }
 
-    public Pbm getPbm(Integer id) {
-        return pbmRepository.findDetailedById(id).orElse(null);
+        List<Integer> ids = pbms.stream().map(Pbm::getId).toList();
+        pbmRepository.fetchCategoriesByIdIn(ids);
+        pbmRepository.fetchDocumentsByIdIn(ids);
+        pbmRepository.fetchNormsByIdIn(ids);
+        pbmRepository.findAllByIdWithWarehouseItems(ids);
     }
 
-    public List<Category> getChildren(Integer parentId) {
-        return categoryRepository.findByParent_IdOrderByNameAsc(parentId);
+    /**
+     * Gets all PBMs of a category as summaries, ordered by name. This is what
+     * list views render; the rich text columns and relations are not loaded.
+     * 
+     * @param categoryId The category ID
+     * @return The PBM summaries
+     */
+    @Cacheable(cacheNames = CatalogCaches.PBMS_BY_CATEGORY, sync = true)
+    public List<PbmSummary> getPbmSummariesByCategory(Integer categoryId) {
+        return pbmRepository.findSummariesByCategoryId(categoryId, Pageable.unpaged());
     }
 
-    public Category getCategoryById(Integer categoryId) {
-        return categoryRepository.findById(categoryId).orElse(null);
+    /**
+     * Gets one page of the PBMs of a category as summaries, ordered by name.
+     * 
+     * @param categoryId The category ID
+     * @param offset     The index of the first PBM
+     * @param limit      The maximum number of PBMs
+     * @return The PBM summaries
+     */
+    @Cacheable(cacheNames = CatalogCaches.PBMS_BY_CATEGORY, sync = true)
+    public List<PbmSummary> getPbmSummariesByCategory(Integer categoryId, int offset, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        return pbmRepository.findSummariesByCategoryId(categoryId, OffsetPageRequest.of(offset, limit));
     }
 
-    public List<Pbm> searchAllPbms(String searchTerm) {
-        return pbmRepository.findAll().stream()
-                .filter(pbm -> matchesPbm(pbm, searchTerm.toLowerCase()))
-                .toList();
+    @Cacheable(cacheNames = CatalogCaches.PBM_COUNT_BY_CATEGORY, sync = true)
+    public long countPbmsByCategory(Integer categoryId) {
+        return pbmRepository.countByCategoryId(categoryId);
     }
 
-    private boolean matchesPbm(Pbm pbm, String searchTerm) {
-        return containsIgnoreCase(pbm.getName(), searchTerm) ||
-                containsIgnoreCase(pbm.getBrand(), searchTerm) ||
-                containsIgnoreCase(pbm.getTypeName(), searchTerm) ||
-                containsIgnoreCase(pbm.getDescription(), searchTerm) ||
-                containsIgnoreCase(pbm.getProtectsAgainst(), searchTerm) ||
-                containsIgnoreCase(pbm.getDoesNotProtectAgainst(), searchTerm) ||
-                containsIgnoreCase(pbm.getNotes(), searchTerm) ||
-                containsIgnoreCase(pbm.getUsageInstructions(), searchTerm) ||
-                containsIgnoreCase(pbm.getDistribution(), searchTerm) ||
-                containsIgnoreCase(pbm.getStandards(), searchTerm);
+    /**
+     * Gets all PBMs of a category and of all its descendants as summaries,
+     * ordered by name. The subtree is a range of the category tree's nested set
+     * numbering, so the union is read with one query.
+     * 
+     * @param categoryId The category ID
+     * @return The PBM summaries, each PBM once
+     */
+    @Cacheable(cacheNames = CatalogCaches.PBMS_BY_SUBTREE, sync = true)
+    public List<PbmSummary> getPbmSummariesBySubtree(Integer categoryId) {
+        return pbmRepository.findSummariesByCategoryIdIn(getSubtreeIds(categoryId), Pageable.unpaged());
     }
 
-    public List<String> getPbmNameSuggestions(String searchTerm) {
-        if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            // Return top 10 PBM names when no search term
-            return pbmRepository.findAll().stream()
-                    .map(Pbm::getName)
-                    .filter(name -> name != null && !name.isBlank())
-                    .distinct()
-                    .sorted()
-                    .limit(10)
-                    .toList();
+    /**
+     * Gets one page of the PBMs of a category and of all its descendants as
+     * summaries, ordered by name.
+     * 
+     * @param categoryId The category ID
+     * @param offset     The index of the first PBM
+     * @param limit      The maximum number of PBMs
+     * @return The PBM summaries, each PBM once
+     */
+    @Cacheable(cacheNames = CatalogCaches.PBMS_BY_SUBTREE, sync = true)
+    public List<PbmSummary> getPbmSummariesBySubtree(Integer categoryId, int offset, int limit) {
+        if (limit <= 0) {
+            return List.of();
         }
 
-        String lowerSearchTerm = searchTerm.toLowerCase().trim();
-        return pbmRepository.findAll().stream()
-                .map(Pbm::getName)
-                .filter(name -> name != null && !name.isBlank())
-                .filter(name -> name.toLowerCase().contains(lowerSearchTerm))
-                .distinct()
-                .sorted()
-                .limit(10)
-                .toList();
+        return pbmRepository.findSummariesByCategoryIdIn(getSubtreeIds(categoryId),
+                OffsetPageRequest.of(offset, limit));
     }
 
-    private boolean containsIgnoreCase(String value, String searchTerm) {
-        return value != null && value.toLowerCase().contains(searchTerm);
+    @Cacheable(cacheNames = CatalogCaches.PBM_COUNT_BY_SUBTREE, sync = true)
+    public long countPbmsBySubtree(Integer categoryId) {
+        return pbmRepository.countByCategoryIdIn(getSubtreeIds(categoryId));
+    }
+
+    private Set<Integer> getSubtreeIds(Integer categoryId) {
+        CategoryTree tree = categoryTreeService.getTree();
+        Set<Integer> subtreeIds = PublishedFilter.isActive() ? tree.getPublishedSubtreeIds(categoryId)
+                : tree.getSubtreeIds(categoryId);
+        // An empty in list is not valid SQL, no category has id -1
+        return subtreeIds.isEmpty() ? Set.of(-1) : subtreeIds;
     }
 
     /**
-     * Gets all categories including parent hierarchy for a given category.
-     * This method ensures all parent categories are properly loaded to avoid
-     * LazyInitializationException.
-     * The returned list is ordered from most specific (leaf) to most general
-     * (root).
+     * Gets the summaries of the given PBMs, in the order of the ids.
      * 
-     * @param category The starting category
-     * @return List of categories from leaf to root (most specific to most general)
+     * @param ids The PBM ids
+     * @return The summaries of the PBMs that exist
      */
-    @Transactional(readOnly = true)
-    public List<Category> getAllCategoriesWithParents(Category category) {
-        List<Category> categories = new ArrayList<>();
-        Category current = category;
-
-        while (current != null) {
-            // Re-fetch the category with parent eagerly loaded to ensure it's in the
-            // current session
-            Category fetchedCategory = categoryRepository.findByIdWithParent(current.getId()).orElse(null);
-            if (fetchedCategory != null) {
-                categories.add(fetchedCategory);
-                current = fetchedCategory.getParent();
-            } else {
-                break;
-            }
+    public List<PbmSummary> getPbmSummaries(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
         }
 
-        return categories;
+        Map<Integer, PbmSummary> summariesById = pbmRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(PbmSummary::id, summary -> summary));
+        return ids.stream()
+                .map(summariesById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Cacheable(cacheNames = CatalogCaches.CATEGORY, sync = true)
+    public Category getCategoryById(Integer categoryId) {
+        // Found by id in the second-level cache, which the filter does not see
+        return categoryRepository.findById(categoryId)
+                .filter(category -> !PublishedFilter.isActive() || Boolean.TRUE.equals(category.getPublished()))
+                .orElse(null);
     }
 
     /**
-     * Optimized method to get all categories with parents for multiple categories
-     * at once.
-     * This reduces the number of database queries by fetching all required
-     * categories in batches.
+     * Searches PBM hits with the configured search engine. In the default
+     * memory mode this does not touch the database.
      * 
-     * @param categories The starting categories
-     * @return Map of category ID to list of categories including parents (leaf to
-     *         root order)
+     * @param searchTerm The search term
+     * @param scope      How far the search reaches
+     * @param categoryId The category the scope is relative to
+     * @return The ranked hits, best match first
      */
-    @Transactional(readOnly = true)
-    public java.util.Map<Integer, List<Category>> getAllCategoriesWithParentsBatch(List<Category> categories) {
-        if (categories == null || categories.isEmpty()) {
-            return new java.util.HashMap<>();
-        }
-
-        // Collect all category IDs we need to fetch (including potential parents)
-        Set<Integer> allCategoryIds = new LinkedHashSet<>();
+    public List<SearchHit> searchPbmHits(String searchTerm, SearchScope scope, Integer categoryId) {
+        return searchPbmHits(searchTerm, scope, categoryId, 0, Integer.MAX_VALUE);
+    }
 
-        // First, get all direct category IDs
-        for (Category category : categories) {
-            if (category.getId() != null) {
-                allCategoryIds.add(category.getId());
-            }
+    /**
+     * Searches one page of PBM hits with the configured search engine. When the
+     * search term is a known warehouse number, the PBMs carrying it come first.
+     * 
+     * @param searchTerm The search term
+     * @param scope      How far the search reaches
+     * @param categoryId The category the scope is relative to
+     * @param offset     The number of hits to skip
+     * @param limit      The maximum number of hits to return
+     * @return The ranked hits, best match first
+     */
+    public List<SearchHit> searchPbmHits(String searchTerm, SearchScope scope, Integer categoryId, int offset,
+            int limit) {
+        if (searchTerm == null || searchTerm.isBlank()) {
+            return List.of();
         }
 
-        // Fetch all categories with parents eagerly loaded to avoid N+1 queries and
-        // lazy loading issues
-        List<Category> allCategories = categoryRepository.findByIdInWithParent(new ArrayList<>(allCategoryIds));
-        java.util.Map<Integer, Category> categoryMap = allCategories.stream()
-                .collect(java.util.stream.Collectors.toMap(Category::getId, c -> c));
-
-        // Now build parent hierarchies for each category
-        java.util.Map<Integer, List<Category>> result = new java.util.HashMap<>();
-
-        for (Category category : categories) {
-            List<Category> hierarchyList = new ArrayList<>();
-            Category current = categoryMap.get(category.getId());
-
-            while (current != null) {
-                hierarchyList.add(current);
-                Integer parentId = current.getParent() != null ? current.getParent().getId() : null;
-
-                if (parentId != null) {
-                    // Try to get parent from our existing map first
-                    current = categoryMap.get(parentId);
-
-                    // If not in map, fetch it with parent eagerly loaded and add to map (this
-                    // handles deep hierarchies)
-                    if (current == null) {
-                        current = categoryRepository.findByIdWithParent(parentId).orElse(null);
-                        if (current != null) {
-                            categoryMap.put(parentId, current);
-                        }
-                    }
-                } else {
-                    current = null;
-                }
-            }
+        List<Integer> warehouseMatches = warehouseNumberService.findPbmIds(searchTerm, scope, categoryId);
+        if (warehouseMatches.isEmpty()) {
+            return pbmSearchEngine.search(searchTerm, scope, categoryId, offset, limit);
+        }
 
-            result.put(category.getId(), hierarchyList);
+        // A typed or scanned warehouse number identifies the PBM; put it first.
+        // The engine does not know about these hits, so its ranking is read from
+        // the start and merged before the page is cut: every warehouse match it
+        // returns as well shifts the rest of its hits by one.
+        int end = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit + warehouseMatches.size());
+        List<SearchHit> merged = new ArrayList<>();
+        warehouseMatches.forEach(
+                pbmId -> merged.add(new SearchHit(pbmId, WarehouseNumberService.EXACT_MATCH_SCORE)));
+        pbmSearchEngine.search(searchTerm, scope, categoryId, 0, end).stream()
+                .filter(hit -> !warehouseMatches.contains(hit.pbmId()))
+                .forEach(merged::add);
+        if (offset >= merged.size()) {
+            return List.of();
         }
+        return merged.subList(offset, (int) Math.min(merged.size(), (long) offset + limit));
+    }
 
-        return result;
+    /**
+     * Gets search box completions (PBM names, brands and warehouse numbers)
+     * from the suggestion index, ranked by relevance and popularity.
+     * 
+     * @param searchTerm The text typed so far
+     * @return At most ten completions
+     */
+    public List<String> getPbmNameSuggestions(String searchTerm) {
+        return pbmSuggestionService.suggest(searchTerm);
     }
 
     /**
-     * Gets all unique categories including parent hierarchies for a PBM.
-     * Uses optimized batch fetching and ID-based deduplication.
+     * Gets all unique categories including parent hierarchies for a PBM,
+     * resolved from the precomputed ancestor paths of the category tree without
+     * any queries.
      * 
      * @param pbm The PBM to get categories for
      * @return List of unique categories including all parents, ordered from most
-     *         specific to most general
+     *         specific to most general per linked category
      */
-    @Transactional(readOnly = true)
-    public List<Category> getAllCategoriesWithParents(Pbm pbm) {
-        if (pbm.getCategories() == null || pbm.getCategories().isEmpty()) {
+    public List<CategoryTree.Node> getAllCategoriesWithParents(Pbm pbm) {
+        if (!hasCategories(pbm)) {
             return new ArrayList<>();
         }
-
-        // Use the optimized batch method for better performance
-        java.util.Map<Integer, List<Category>> batchResult = getAllCategoriesWithParentsBatch(
-                new ArrayList<>(pbm.getCategories()));
-
-        // Collect ALL categories from all hierarchies first
-        java.util.Map<Integer, Category> uniqueCategories = new java.util.LinkedHashMap<>();
-
-        // Process each category's hierarchy and collect unique categories
-        for (Category category : pbm.getCategories()) {
-            List<Category> categoriesWithParents = batchResult.get(category.getId());
-
-            if (categoriesWithParents != null) {
-                // Add all categories from this hierarchy, but only if we haven't seen their ID
-                // before
-                for (Category cat : categoriesWithParents) {
-                    if (cat.getId() != null && !uniqueCategories.containsKey(cat.getId())) {
-                        uniqueCategories.put(cat.getId(), cat);
-                    }
-                }
-            }
-        }
-
-        // Convert to list maintaining insertion order
-        return new ArrayList<>(uniqueCategories.values());
+        return getAllCategoriesWithParents(List.of(pbm));
     }
 
     /**
-     * Gets all unique categories including parent hierarchies for multiple PBMs.
-     * Highly optimized for batch processing to minimize database queries.
+     * Gets all unique categories including parent hierarchies for multiple PBMs,
+     * resolved from the precomputed ancestor paths of the category tree without
+     * any queries.
      * 
      * @param pbms The PBMs to get categories for
      * @return List of unique categories including all parents from all PBMs
      */
-    @Transactional(readOnly = true)
-    public List<Category> getAllCategoriesWithParents(List<Pbm> pbms) {
+    public List<CategoryTree.Node> getAllCategoriesWithParents(List<Pbm> pbms) {
         if (pbms == null || pbms.isEmpty()) {
             return new ArrayList<>();
         }
 
-        // Collect all unique categories from all PBMs first
-        Set<Integer> uniqueCategoryIds = new LinkedHashSet<>();
-        List<Category> allPbmCategories = new ArrayList<>();
-
+        Set<Integer> categoryIds = new LinkedHashSet<>();
         for (Pbm pbm : pbms) {
             if (pbm.getCategories() != null) {
-                for (Category category : pbm.getCategories()) {
-                    if (category.getId() != null && !uniqueCategoryIds.contains(category.getId())) {
-                        uniqueCategoryIds.add(category.getId());
-                        allPbmCategories.add(category);
-                    }
-                }
+                pbm.getCategories().forEach(category -> categoryIds.add(category.getId()));
             }
         }
-
-        // Use batch method to get all hierarchies at once - much more efficient!
-        java.util.Map<Integer, List<Category>> batchResult = getAllCategoriesWithParentsBatch(allPbmCategories);
-
-        // Collect ALL categories from all hierarchies using improved deduplication
-        java.util.Map<Integer, Category> uniqueCategories = new java.util.LinkedHashMap<>();
-
-        for (Category category : allPbmCategories) {
-            List<Category> categoriesWithParents = batchResult.get(category.getId());
-
-            if (categoriesWithParents != null) {
-                for (Category cat : categoriesWithParents) {
-                    if (cat.getId() != null && !uniqueCategories.containsKey(cat.getId())) {
-                        uniqueCategories.put(cat.getId(), cat);
-                    }
-                }
-            }
+        CategoryTree tree = categoryTreeService.getTree();
+        List<CategoryTree.Node> hierarchy = tree.getHierarchy(categoryIds);
+        if (!PublishedFilter.isActive()) {
+            return hierarchy;
         }
+        return hierarchy.stream()
+                .filter(node -> tree.isPublished(node.id()))
+                .toList();
+    }
 
-        // Convert to list maintaining insertion order
-        return new ArrayList<>(uniqueCategories.values());
+    /**
+     * Records that a PBM was viewed, for its popularity. Returns immediately,
+     * the hits are written in batches.
+     * 
+     * @param pbm The viewed PBM
+     */
+    public void recordHit(Pbm pbm) {
+        pbmHitCounter.recordHit(pbm.getId());
     }
 
     /**
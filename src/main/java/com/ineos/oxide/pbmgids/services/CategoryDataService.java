@@ -4,6 +4,9 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
+import com.ineos.oxide.pbmgids.search.SearchHit;
+import com.ineos.oxide.pbmgids.search.SearchScope;
 
 /**
  * Service class that handles category-related data operations for the catalog
@@ -15,18 +18,20 @@ public class CategoryDataService {
 
     private final CatalogService catalogService;
     private Integer currentCategoryId;
+    private boolean includeSubcategories;
 
     public CategoryDataService(CatalogService catalogService) {
         this.catalogService = catalogService;
     }
 
     /**
-     * Loads PBMs for the specified category ID
+     * Loads the summaries of all PBMs for the specified category ID, including
+     * its subcategories when the current category was selected as a subtree
      * 
      * @param categoryId The category ID to load PBMs for
-     * @return List of PBMs in the category
+     * @return List of PBM summaries in the category, ordered by name
      */
-    public List<Pbm> loadPbmsByCategory(Integer categoryId) {
+    public List<PbmSummary> loadPbmsByCategory(Integer categoryId) {
         if (categoryId == null) {
             logger.warning("Category ID is null, returning empty list");
             return List.of();
@@ -36,13 +41,101 @@ public class CategoryDataService {
         logger.info("Loading PBMs for category ID: " + categoryId);
 
         try {
-            return catalogService.getByCategory(categoryId);
+            return includeSubcategories ? catalogService.getPbmSummariesBySubtree(categoryId)
+                    : catalogService.getPbmSummariesByCategory(categoryId);
         } catch (Exception e) {
             logger.severe("Error loading PBMs for category " + categoryId + ": " + e.getMessage());
             return List.of();
         }
     }
 
+    /**
+     * Makes the given category the current one without loading its PBMs
+     * 
+     * @param categoryId           The category ID
+     * @param includeSubcategories Whether the PBMs of all descendant categories
+     *                             are listed as well
+     */
+    public void selectCategory(Integer categoryId, boolean includeSubcategories) {
+        this.currentCategoryId = categoryId;
+        this.includeSubcategories = includeSubcategories;
+    }
+
+    /**
+     * Fetches one page of the PBMs of the current category
+     * 
+     * @param offset The index of the first PBM
+     * @param limit  The maximum number of PBMs
+     * @return The PBM summaries, ordered by name
+     */
+    public List<PbmSummary> fetchPbmSummaries(int offset, int limit) {
+        if (currentCategoryId == null) {
+            return List.of();
+        }
+
+        try {
+            return includeSubcategories
+                    ? catalogService.getPbmSummariesBySubtree(currentCategoryId, offset, limit)
+                    : catalogService.getPbmSummariesByCategory(currentCategoryId, offset, limit);
+        } catch (Exception e) {
+            logger.severe("Error fetching PBMs for category " + currentCategoryId + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Counts the PBMs of the current category
+     * 
+     * @return The number of PBMs, 0 if no category is selected
+     */
+    public int countPbms() {
+        if (currentCategoryId == null) {
+            return 0;
+        }
+
+        try {
+            return (int) (includeSubcategories ? catalogService.countPbmsBySubtree(currentCategoryId)
+                    : catalogService.countPbmsByCategory(currentCategoryId));
+        } catch (Exception e) {
+            logger.severe("Error counting PBMs for category " + currentCategoryId + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Loads the summaries of the given PBMs
+     * 
+     * @param pbmIds The PBM ids
+     * @return The summaries, in the order of the ids
+     */
+    public List<PbmSummary> loadPbmSummaries(List<Integer> pbmIds) {
+        try {
+            return catalogService.getPbmSummaries(pbmIds);
+        } catch (Exception e) {
+            logger.severe("Error loading PBM summaries: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Loads a PBM with all its relations, for the details and comparison views
+     * 
+     * @param pbmId The PBM id
+     * @return The PBM or null if not found
+     */
+    public Pbm loadPbm(Integer pbmId) {
+        if (pbmId == null) {
+            return null;
+        }
+
+        try {
+            return catalogService.getPbm(pbmId);
+        } catch (Exception e) {
+            logger.severe("Error loading PBM " + pbmId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Gets the current category ID
      * 
@@ -93,20 +186,25 @@ public class CategoryDataService {
     }
 
     /**
-     * Searches all PBMs across categories
+     * Searches the ids of the PBMs within a scope relative to the current
+     * category, without loading the PBMs
      * 
      * @param searchTerm The search term
-     * @return List of matching PBMs
+     * @param scope      How far the search reaches
+     * @return The ids of the matching PBMs, best match first
      */
-    public List<Pbm> searchAllPbms(String searchTerm) {
+    public List<Integer> searchPbmIds(String searchTerm, SearchScope scope) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return List.of();
         }
 
         try {
-            return catalogService.searchAllPbms(searchTerm.trim());
+            return catalogService.searchPbmHits(searchTerm.trim(), scope, currentCategoryId).stream()
+                    .map(SearchHit::pbmId)
+                    .toList();
         } catch (Exception e) {
-            logger.severe("Error searching PBMs with term '" + searchTerm + "': " + e.getMessage());
+            logger.severe("Error searching PBMs with term '" + searchTerm + "' in scope " + scope + ": "
+                    + e.getMessage());
             return List.of();
         }
     }
@@ -114,8 +212,9 @@ public class CategoryDataService {
     /**
      * Gets PBM name suggestions based on search term
      * 
-     * @param searchTerm The search term to match against PBM names
-     * @return List of PBM names containing the search term
+     * @param searchTerm The text typed so far
+     * @return List of PBM names, brands and warehouse numbers completing the
+     *         search term, best match first
      */
     public List<String> getPbmNameSuggestions(String searchTerm) {
         try {
@@ -131,5 +230,6 @@ public class CategoryDataService {
      */
     public void resetCategory() {
         this.currentCategoryId = null;
+        this.includeSubcategories = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.ineos.oxide.pbmgids.services;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Counts how often PBMs are viewed, without a database write per view.
+ * <p>
+ * Views only increment a {@link LongAdder} per PBM id, which never blocks. A
+ * scheduled job takes the accumulated deltas and adds them to
+ * {@code pbm.hits} with one batched update per interval, so views cause no
+ * write latency or row lock contention. Deltas of a failed flush are added
+ * back and retried with the next one; a successful flush is announced with a
+ * {@link PbmHitsFlushedEvent}.
+ */
+@Service
+public class PbmHitCounter {
+    private static final Logger logger = Logger.getLogger(PbmHitCounter.class.getName());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    // Adders are kept once created, there is at most one per PBM
+    private final Map<Integer, LongAdder> pendingHits = new ConcurrentHashMap<>();
+
+    private String updateSql = "update pbm set hits = hits + ? where id = ?";
+
+    public PbmHitCounter(JdbcTemplate jdbcTemplate, DataSource dataSource,
+            ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void detectDatabase() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (product != null
+                    && (product.toLowerCase().contains("mysql") || product.toLowerCase().contains("mariadb"))) {
+                // Keep last_modified as it is, a view is not an edit of the PBM
+                updateSql = "update pbm set hits = hits + ?, last_modified = last_modified where id = ?";
+            }
+        } catch (Exception e) {
+            logger.warning("Could not detect database product for the hit counter: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records one view of a PBM.
+     *
+     * @param pbmId The PBM id
+     */
+    public void recordHit(Integer pbmId) {
+        if (pbmId != null) {
+            pendingHits.computeIfAbsent(pbmId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Writes the hits recorded since the previous flush.
+     */
+    @Scheduled(fixedDelayString = "${pbmgids.hits.flush-interval:60s}")
+    public void flush() {
+        flush(true);
+    }
+
+    private synchronized void flush(boolean announce) {
+        Map<Integer, Long> deltas = new HashMap<>();
+        pendingHits.forEach((pbmId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.put(pbmId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((pbmId, delta) -> batch.add(new Object[] { delta, pbmId }));
+        try {
+            jdbcTemplate.batchUpdate(updateSql, batch);
+            logger.fine("Flushed hits of " + deltas.size() + " PBMs");
+        } catch (Exception e) {
+            logger.warning("Error flushing hits of " + deltas.size() + " PBMs, retrying later: " + e.getMessage());
+            deltas.forEach((pbmId, delta) -> pendingHits.computeIfAbsent(pbmId, id -> new LongAdder()).add(delta));
+            return;
+        }
+        if (announce) {
+            eventPublisher.publishEvent(new PbmHitsFlushedEvent(Map.copyOf(deltas)));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Nobody is left to rank with the new hits
+        flush(false);
+    }
+}
@@ -0,0 +1,12 @@
+package com.ineos.oxide.pbmgids.services;
+
+import java.util.Map;
+
+/**
+ * Published by {@link PbmHitCounter} after recorded views were written to the
+ * database, so popularity rankings can follow.
+ *
+ * @param hits The number of new hits per PBM id
+ */
+public record PbmHitsFlushedEvent(Map<Integer, Long> hits) {
+}
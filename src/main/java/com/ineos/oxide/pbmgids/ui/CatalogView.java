@@ -2,10 +2,14 @@ package com.ineos.oxide.pbmgids.ui;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.logging.Logger;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
 import com.ineos.oxide.pbmgids.managers.ComparisonManager;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
+import com.ineos.oxide.pbmgids.search.SearchScope;
 import com.ineos.oxide.pbmgids.services.CatalogService;
 import com.ineos.oxide.pbmgids.services.CategoryDataService;
 import com.ineos.oxide.pbmgids.ui.components.LayoutToggleComponent;
@@ -24,6 +28,7 @@ import com.vaadin.flow.component.notification.NotificationVariant;
 import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.select.Select;
 import com.vaadin.flow.router.BeforeEnterEvent;
 import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.PageTitle;
@@ -32,20 +37,27 @@ import com.vaadin.flow.server.auth.AnonymousAllowed;
 
 /**
  * Main catalog view that displays PBMs for a specific category.
- * This view is accessed via URL: /catalog/{categoryId}
+ * This view is accessed via URL: /catalog/{categoryId}, or
+ * /catalog/{categoryId}/all to also list the PBMs of all subcategories.
  * 
  * Refactored to use separate component classes for better separation of
  * concerns.
  */
-@Route(value = "catalog/:categoryId", layout = MainView.class)
+@Route(value = "catalog/:" + CatalogView.CATEGORY_ID_PARAMETER + "/:" + CatalogView.LISTING_PARAMETER + "?("
+        + CatalogView.SUBTREE_LISTING + ")", layout = MainView.class)
 @PageTitle("")
 @AnonymousAllowed
 public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
     private static final Logger logger = Logger.getLogger(CatalogView.class.getName());
 
+    public static final String CATEGORY_ID_PARAMETER = "categoryId";
+    public static final String LISTING_PARAMETER = "listing";
+    public static final String SUBTREE_LISTING = "all";
+
     // Components
     private final H2 categoryTitle;
     private final SearchComponent searchField;
+    private final Select<SearchScope> searchScopeSelect;
     private final LayoutToggleComponent layoutToggle;
     private final PbmGridComponent pbmGrid;
     private final PbmTileLayout tileLayout;
@@ -63,10 +75,15 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
 
     // State
     private Integer currentCategoryId;
-    private List<Pbm> allPbms = new ArrayList<>();
+    // Summaries of all PBMs of the category, only loaded when the tile view
+    // needs them
+    private List<PbmSummary> allPbms;
+    // Ranked ids of the PBMs matching the current search
+    private List<Integer> filteredPbmIds = List.of();
     private String currentSearchFilter = "";
+    private SearchScope currentSearchScope = SearchScope.CATEGORY;
 
-    public CatalogView(CatalogService catalogService) {
+    public CatalogView(CatalogService catalogService, ImageUrlService imageUrlService) {
         // Initialize services and managers
         this.categoryDataService = new CategoryDataService(catalogService);
         this.comparisonManager = new ComparisonManager(this::onComparisonSelectionChanged);
@@ -74,29 +91,33 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
         // Initialize components
         this.categoryTitle = new H2("PBM Catalog");
         this.searchField = new SearchComponent("Search PBMs...");
+        this.searchScopeSelect = new Select<>();
         this.layoutToggle = new LayoutToggleComponent();
-        this.pbmGrid = new PbmGridComponent();
-        this.tileLayout = new PbmTileLayout();
+        this.pbmGrid = new PbmGridComponent(imageUrlService);
+        this.tileLayout = new PbmTileLayout(imageUrlService);
         this.compareButton = new Button("Compare Selected", VaadinIcon.SCALE.create());
         this.toolbarLayout = new HorizontalLayout();
         this.searchLayout = new HorizontalLayout();
 
         // Initialize dialogs
-        this.detailsDialog = new PbmDetailsDialog(catalogService);
-        this.comparisonDialog = new PbmComparisonDialog(catalogService);
+        this.detailsDialog = new PbmDetailsDialog(catalogService, imageUrlService);
+        this.comparisonDialog = new PbmComparisonDialog(catalogService, imageUrlService);
 
         initializeView();
     }
 
     @Override
     public void beforeEnter(BeforeEnterEvent event) {
-        String categoryIdParam = event.getRouteParameters().get("categoryId").orElse(null);
+        String categoryIdParam = event.getRouteParameters().get(CATEGORY_ID_PARAMETER).orElse(null);
         Integer categoryId = categoryDataService.validateAndParseCategoryId(categoryIdParam);
+        boolean includeSubcategories = event.getRouteParameters().get(LISTING_PARAMETER)
+                .map(SUBTREE_LISTING::equals)
+                .orElse(false);
 
         if (categoryId != null) {
             this.currentCategoryId = categoryId;
-            loadPbmsForCategory(categoryId);
-            loadCategoryTitle(categoryId);
+            loadPbmsForCategory(categoryId, includeSubcategories);
+            loadCategoryTitle(categoryId, includeSubcategories);
         } else {
             logger.warning("Invalid or missing category ID, showing empty grid");
             handleInvalidCategory();
@@ -128,12 +149,20 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
         searchField.setSuggestionProvider(
                 filter -> filter.length() >= 2 ? categoryDataService.getPbmNameSuggestions(filter) : List.of());
         searchField.setSearchHandler(this::performSearch);
+
+        searchScopeSelect.setItems(SearchScope.values());
+        searchScopeSelect.setItemLabelGenerator(SearchScope::getDisplayName);
+        searchScopeSelect.setValue(SearchScope.CATEGORY);
+        searchScopeSelect.addValueChangeListener(event -> {
+            currentSearchScope = event.getValue() != null ? event.getValue() : SearchScope.CATEGORY;
+            performSearch(currentSearchFilter);
+        });
     }
 
     private void setupSearchLayout() {
         searchLayout.setWidthFull();
         searchLayout.setAlignItems(FlexComponent.Alignment.CENTER);
-        searchLayout.add(searchField, layoutToggle);
+        searchLayout.add(searchField, searchScopeSelect, layoutToggle);
         searchLayout.setFlexGrow(1, searchField);
     }
 
@@ -143,12 +172,12 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
 
     private void setupTileLayout() {
         tileLayout.setComparisonManager(comparisonManager);
-        tileLayout.setOnDetailsClick(this::showPbmDetails);
+        tileLayout.setOnDetailsClick(summary -> showPbmDetails(summary.id()));
     }
 
     private void setupGrid() {
         pbmGrid.setComparisonManager(comparisonManager);
-        pbmGrid.setOnDetailsClick(this::showPbmDetails);
+        pbmGrid.setOnDetailsClick(summary -> showPbmDetails(summary.id()));
     }
 
     private void onLayoutToggle(LayoutToggleComponent.LayoutType layoutType) {
@@ -181,15 +210,41 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
     }
 
     private void updateTileLayout() {
-        List<Pbm> filteredPbms = getFilteredPbms();
+        List<PbmSummary> filteredPbms = getFilteredPbms();
         tileLayout.updateTiles(filteredPbms);
     }
 
-    private List<Pbm> getFilteredPbms() {
-        if (currentSearchFilter == null || currentSearchFilter.trim().isEmpty()) {
+    private List<PbmSummary> getFilteredPbms() {
+        if (!isFiltering()) {
+            if (allPbms == null) {
+                allPbms = currentCategoryId != null ? categoryDataService.loadPbmsByCategory(currentCategoryId)
+                        : new ArrayList<>();
+            }
             return allPbms;
+        }
+        return categoryDataService.loadPbmSummaries(filteredPbmIds);
+    }
+
+    private boolean isFiltering() {
+        return currentSearchFilter != null && !currentSearchFilter.trim().isEmpty();
+    }
+
+    /**
+     * Points the grid at the current category or search result. Rows are
+     * fetched lazily, one page of summaries at a time.
+     */
+    private void refreshGrid() {
+        if (isFiltering()) {
+            List<Integer> pbmIds = filteredPbmIds;
+            pbmGrid.setItems(
+                    query -> categoryDataService.loadPbmSummaries(pbmIds.subList(
+                            Math.min(query.getOffset(), pbmIds.size()),
+                            Math.min(query.getOffset() + query.getLimit(), pbmIds.size()))).stream(),
+                    query -> pbmIds.size());
         } else {
-            return categoryDataService.searchAllPbms(currentSearchFilter.trim());
+            pbmGrid.setItems(
+                    query -> categoryDataService.fetchPbmSummaries(query.getOffset(), query.getLimit()).stream(),
+                    query -> categoryDataService.countPbms());
         }
     }
 
@@ -207,7 +262,7 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
         toolbarLayout.setSpacing(true);
     }
 
-    private void onComparisonSelectionChanged(List<Pbm> selectedPbms) {
+    private void onComparisonSelectionChanged(List<PbmSummary> selectedPbms) {
         updateCompareButtonState(selectedPbms);
 
         // Refresh grid checkboxes if in table view
@@ -216,34 +271,42 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
         }
     }
 
-    private void updateCompareButtonState(List<Pbm> selectedPbms) {
+    private void updateCompareButtonState(List<PbmSummary> selectedPbms) {
         compareButton.setEnabled(selectedPbms.size() >= 2);
         compareButton.setText("Compare Selected (" + selectedPbms.size() + ")");
     }
 
-    private void loadPbmsForCategory(Integer categoryId) {
-        allPbms = categoryDataService.loadPbmsByCategory(categoryId);
-        pbmGrid.setItems(allPbms);
+    private void loadPbmsForCategory(Integer categoryId, boolean includeSubcategories) {
+        categoryDataService.selectCategory(categoryId, includeSubcategories);
+        allPbms = null;
+        currentSearchFilter = "";
+        filteredPbmIds = List.of();
+        refreshGrid();
         if (layoutToggle.isTileView()) {
             updateTileLayout();
         }
         searchField.clear();
+        // Searching a subtree listing searches the same subtree by default
+        searchScopeSelect.setValue(includeSubcategories ? SearchScope.SUBTREE : SearchScope.CATEGORY);
         comparisonManager.clearSelection();
     }
 
-    private void loadCategoryTitle(Integer categoryId) {
+    private void loadCategoryTitle(Integer categoryId, boolean includeSubcategories) {
         String categoryName = categoryDataService.getCategoryName(categoryId);
+        String suffix = includeSubcategories ? " (including subcategories)" : "";
         if (categoryName != null && !categoryName.isBlank()) {
-            categoryTitle.setText("PBM Catalog - " + categoryName);
+            categoryTitle.setText("PBM Catalog - " + categoryName + suffix);
         } else {
-            categoryTitle.setText("PBM Catalog - Category " + categoryId);
+            categoryTitle.setText("PBM Catalog - Category " + categoryId + suffix);
         }
     }
 
     private void performSearch(String searchTerm) {
         currentSearchFilter = searchTerm;
-        List<Pbm> filteredPbms = getFilteredPbms();
-        pbmGrid.setItems(filteredPbms);
+        filteredPbmIds = isFiltering()
+                ? categoryDataService.searchPbmIds(currentSearchFilter.trim(), currentSearchScope)
+                : List.of();
+        refreshGrid();
 
         if (layoutToggle.isTileView()) {
             updateTileLayout();
@@ -253,14 +316,18 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
     private void handleInvalidCategory() {
         this.currentCategoryId = null;
         categoryTitle.setText("PBM Catalog - Invalid Category");
-        allPbms.clear();
+        categoryDataService.resetCategory();
+        allPbms = new ArrayList<>();
+        filteredPbmIds = List.of();
         pbmGrid.setItems();
         if (layoutToggle.isTileView()) {
             updateTileLayout();
         }
     }
 
-    private void showPbmDetails(Pbm pbm) {
+    private void showPbmDetails(Integer pbmId) {
+        // List rows do not carry the relations shown in the dialog
+        Pbm pbm = categoryDataService.loadPbm(pbmId);
         if (pbm != null) {
             detailsDialog.showPbm(pbm);
         }
@@ -273,6 +340,10 @@ public class CatalogView extends VerticalLayout implements BeforeEnterObserver {
             return;
         }
 
-        comparisonDialog.showComparison(comparisonManager.getSelectedPbms());
+        List<Pbm> pbms = comparisonManager.getSelectedPbmIds().stream()
+                .map(categoryDataService::loadPbm)
+                .filter(Objects::nonNull)
+                .toList();
+        comparisonDialog.showComparison(pbms);
     }
 }
@@ -2,6 +2,7 @@ package com.ineos.oxide.pbmgids.ui;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.context.annotation.PropertySource;
 
@@ -15,8 +16,9 @@ import com.ineos.oxide.base.security.ui.RoleView;
 import com.ineos.oxide.base.security.ui.UserView;
 import com.ineos.oxide.base.services.HasLogger;
 import com.ineos.oxide.base.services.HasResources;
-import com.ineos.oxide.pbmgids.model.entities.Category;
-import com.ineos.oxide.pbmgids.services.CatalogService;
+import com.ineos.oxide.pbmgids.categories.CategoryTree;
+import com.ineos.oxide.pbmgids.categories.CategoryTreeService;
+import com.ineos.oxide.pbmgids.model.PublishedFilter;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Span;
@@ -35,11 +37,11 @@ public class MainView extends IosMainLayout implements HasLogger, HasResources {
 	private static final String MENU_TITLE = "menu.title";
 
 	private ServiceUsers serviceUsers;
-	private transient CatalogService catalogService;
+	private transient CategoryTreeService categoryTreeService;
 
-	public MainView(ServiceUsers serviceUsers, CatalogService catalogService) {
+	public MainView(ServiceUsers serviceUsers, CategoryTreeService categoryTreeService) {
 		this.serviceUsers = serviceUsers;
-		this.catalogService = catalogService;
+		this.categoryTreeService = categoryTreeService;
 	}
 
 	@PostConstruct
@@ -87,20 +89,29 @@ public class MainView extends IosMainLayout implements HasLogger, HasResources {
 	}
 
 	private List<MenuItemInfo> generateMenuCategories() {
+		// The shared in-memory snapshot, building the menu costs no queries
+		CategoryTree tree = categoryTreeService.getTree();
+		boolean publishedOnly = PublishedFilter.isActive();
 		List<MenuItemInfo> menuItems = new ArrayList<>();
-		catalogService.getRootCategories().stream().forEach(cat -> {
-			menuItems.add(createRecursiveMenuItem(cat));
+		visible(tree.getRoots(), publishedOnly).forEach(cat -> {
+			menuItems.add(createRecursiveMenuItem(tree, cat, publishedOnly));
 		});
 		return menuItems;
 	}
 
-	private MenuItemInfo createRecursiveMenuItem(Category category) {
-		List<Category> children = catalogService.getChildren(category.getId());
+	private static List<CategoryTree.Node> visible(List<CategoryTree.Node> categories, boolean publishedOnly) {
+		// An unpublished category hides its whole subtree
+		return publishedOnly ? categories.stream().filter(CategoryTree.Node::published).toList() : categories;
+	}
+
+	private MenuItemInfo createRecursiveMenuItem(CategoryTree tree, CategoryTree.Node category,
+			boolean publishedOnly) {
+		List<CategoryTree.Node> children = visible(tree.getChildren(category.id()), publishedOnly);
 
 		if (children == null || children.isEmpty()) {
 			// Leaf category - create direct navigation link
-			MenuItemInfo item = new MenuItemInfo(category.getName(), MENU_ICON_LIST_UL,
-					CatalogView.class, new RouteParameters("categoryId", category.getId().toString()));
+			MenuItemInfo item = new MenuItemInfo(category.name(), MENU_ICON_LIST_UL,
+					CatalogView.class, new RouteParameters(CatalogView.CATEGORY_ID_PARAMETER, category.id().toString()));
 			// close all open accordions to ensure proper highlighting of selected item
 
 			return item;
@@ -108,12 +119,17 @@ public class MainView extends IosMainLayout implements HasLogger, HasResources {
 			// Parent category with children - create submenu with recursive items
 			List<MenuItemInfo> subMenuItems = new ArrayList<>();
 
-			// Recursively add children only (don't add the parent as a child of itself)
+			// First entry lists the PBMs of the whole subtree
+			subMenuItems.add(new MenuItemInfo("All " + category.name(), MENU_ICON_LIST_UL, CatalogView.class,
+					new RouteParameters(Map.of(CatalogView.CATEGORY_ID_PARAMETER, category.id().toString(),
+							CatalogView.LISTING_PARAMETER, CatalogView.SUBTREE_LISTING))));
+
+			// Recursively add children
 			children.stream().forEach(child -> {
-				subMenuItems.add(createRecursiveMenuItem(child));
+				subMenuItems.add(createRecursiveMenuItem(tree, child, publishedOnly));
 			});
 
-			return new MenuItemInfo(category.getName(), MENU_ICON_LIST_UL,
+			return new MenuItemInfo(category.name(), MENU_ICON_LIST_UL,
 					subMenuItems.toArray(new MenuItemInfo[subMenuItems.size()]));
 		}
 	}
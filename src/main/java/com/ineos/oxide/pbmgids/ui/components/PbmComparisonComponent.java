@@ -2,6 +2,9 @@ package com.ineos.oxide.pbmgids.ui.components;
 
 import java.util.List;
 
+import com.ineos.oxide.pbmgids.categories.CategoryTree;
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
 import com.ineos.oxide.pbmgids.services.CatalogService;
 import com.ineos.oxide.pbmgids.ui.components.PbmContentComponent.ContentSection;
@@ -20,10 +23,14 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 public class PbmComparisonComponent extends VerticalLayout {
     private static final long serialVersionUID = 1L;
 
+    private static final int IMAGE_SIZE = 120;
+
     private final CatalogService catalogService;
+    private final ImageUrlService imageUrlService;
 
-    public PbmComparisonComponent(CatalogService catalogService) {
+    public PbmComparisonComponent(CatalogService catalogService, ImageUrlService imageUrlService) {
         this.catalogService = catalogService;
+        this.imageUrlService = imageUrlService;
         setPadding(true);
         setSpacing(true);
         setWidthFull();
@@ -71,12 +78,11 @@ public class PbmComparisonComponent extends VerticalLayout {
             pbmLayout.add(nameHeader);
 
             // PBM image
-            if (pbm.getImage() != null && !pbm.getImage().isBlank()) {
-                String imageUrl = getImageUrl(pbm.getImage());
-                Image img = new Image(imageUrl, pbm.getName());
-                img.setAlt(pbm.getName());
-                img.setWidth("120px");
-                img.setHeight("120px");
+            DisplayedImage image = imageUrlService.displayed(pbm.getImage(), IMAGE_SIZE);
+            if (image != null) {
+                Image img = PbmImages.create(image, pbm.getName());
+                img.setWidth(IMAGE_SIZE + "px");
+                img.setHeight(IMAGE_SIZE + "px");
                 img.getStyle().set("object-fit", "contain");
                 pbmLayout.add(img);
             } else {
@@ -142,22 +148,6 @@ public class PbmComparisonComponent extends VerticalLayout {
         return accordion;
     }
 
-    private String getImageUrl(String imagePath) {
-        if (imagePath == null || imagePath.isBlank()) {
-            return "/images/placeholder.png";
-        }
-
-        // Remove leading slash if present
-        String cleanPath = imagePath.startsWith("/") ? imagePath.substring(1) : imagePath;
-
-        // If the path starts with mag_doc, use /static/ prefix, otherwise use /images/
-        if (cleanPath.startsWith("mag_doc/")) {
-            return "/static/" + cleanPath;
-        } else {
-            return "/images/" + cleanPath;
-        }
-    }
-
     private FlexLayout createCenteredCategoryBadges(Pbm pbm) {
         FlexLayout layout = new FlexLayout();
         layout.getStyle().set("gap", "5px");
@@ -168,32 +158,30 @@ public class PbmComparisonComponent extends VerticalLayout {
             return layout;
         }
 
-        List<com.ineos.oxide.pbmgids.model.entities.Category> allCategories = catalogService
-                .getAllCategoriesWithParents(pbm);
+        List<CategoryTree.Node> allCategories = catalogService.getAllCategoriesWithParents(pbm);
 
         // Deduplicate by ID and name
-        java.util.Map<String, com.ineos.oxide.pbmgids.model.entities.Category> uniqueCategories = new java.util.LinkedHashMap<>();
-        for (com.ineos.oxide.pbmgids.model.entities.Category category : allCategories) {
-            if (category.getId() != null && !uniqueCategories.containsKey(category.getName())) {
-                uniqueCategories.put(category.getName(), category);
+        java.util.Map<String, CategoryTree.Node> uniqueCategories = new java.util.LinkedHashMap<>();
+        for (CategoryTree.Node category : allCategories) {
+            if (category.id() != null && !uniqueCategories.containsKey(category.name())) {
+                uniqueCategories.put(category.name(), category);
             }
         }
 
-        List<com.ineos.oxide.pbmgids.model.entities.Category> categories = new java.util.ArrayList<>(
-                uniqueCategories.values());
+        List<CategoryTree.Node> categories = new java.util.ArrayList<>(uniqueCategories.values());
 
         // Find root categories
         java.util.Set<Integer> parentIds = new java.util.HashSet<>();
-        for (com.ineos.oxide.pbmgids.model.entities.Category category : categories) {
-            if (category.getParent() != null) {
-                parentIds.add(category.getParent().getId());
+        for (CategoryTree.Node category : categories) {
+            if (category.parentId() != null) {
+                parentIds.add(category.parentId());
             }
         }
 
         // Create badges
-        for (com.ineos.oxide.pbmgids.model.entities.Category category : categories) {
-            com.vaadin.flow.component.html.Span badge = new com.vaadin.flow.component.html.Span(category.getName());
-            if (!parentIds.contains(category.getId())) {
+        for (CategoryTree.Node category : categories) {
+            com.vaadin.flow.component.html.Span badge = new com.vaadin.flow.component.html.Span(category.name());
+            if (!parentIds.contains(category.id())) {
                 badge.getElement().getThemeList().add("badge success primary pill");
             } else {
                 badge.getElement().getThemeList().add("badge primary pill");
@@ -1,5 +1,7 @@
 package com.ineos.oxide.pbmgids.ui.components;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Image;
@@ -13,8 +15,12 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
  */
 public class PbmDetailsComponent extends VerticalLayout {
     private static final long serialVersionUID = 1L;
+    private static final int IMAGE_SIZE = 160;
 
-    public PbmDetailsComponent() {
+    private final ImageUrlService imageUrlService;
+
+    public PbmDetailsComponent(ImageUrlService imageUrlService) {
+        this.imageUrlService = imageUrlService;
         setSpacing(false);
         setPadding(false);
     }
@@ -32,9 +38,10 @@ public class PbmDetailsComponent extends VerticalLayout {
         }
 
         // Add image if available
-        if (pbm.getImage() != null && !pbm.getImage().isBlank()) {
-            Image img = new Image(pbm.getImage(), pbm.getName());
-            img.setWidth("160px");
+        DisplayedImage image = imageUrlService.displayed(pbm.getImage(), IMAGE_SIZE);
+        if (image != null) {
+            Image img = PbmImages.create(image, pbm.getName());
+            img.setWidth(IMAGE_SIZE + "px");
             add(img);
         }
 
@@ -3,6 +3,8 @@ package com.ineos.oxide.pbmgids.ui.components;
 import java.util.List;
 import java.util.function.Consumer;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.grid.Grid;
@@ -18,10 +20,14 @@ import com.vaadin.flow.data.renderer.ComponentRenderer;
 public class PbmGrid extends Grid<Pbm> {
     private static final long serialVersionUID = 1L;
 
+    private static final int IMAGE_SIZE = 64;
+
+    private final ImageUrlService imageUrlService;
     private Consumer<Pbm> detailsClickHandler;
 
-    public PbmGrid() {
+    public PbmGrid(ImageUrlService imageUrlService) {
         super(Pbm.class, false);
+        this.imageUrlService = imageUrlService;
         initializeColumns();
         setupEventHandlers();
         addThemeVariants(GridVariant.LUMO_ROW_STRIPES);
@@ -66,13 +72,13 @@ public class PbmGrid extends Grid<Pbm> {
     }
 
     private Div createImageComponent(Pbm pbm) {
-        if (pbm.getImage() == null || pbm.getImage().isBlank()) {
+        DisplayedImage image = imageUrlService.displayed(pbm.getImage(), IMAGE_SIZE);
+        if (image == null) {
             return new Div();
         }
 
-        Image img = new Image(pbm.getImage(), pbm.getName());
-        img.setAlt(pbm.getName());
-        img.setWidth("64px");
+        Image img = PbmImages.create(image, pbm.getName());
+        img.setWidth(IMAGE_SIZE + "px");
 
         Div container = new Div(img);
         return container;
@@ -2,8 +2,10 @@ package com.ineos.oxide.pbmgids.ui.components;
 
 import java.util.function.Consumer;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
 import com.ineos.oxide.pbmgids.managers.ComparisonManager;
-import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.grid.Grid;
@@ -15,17 +17,20 @@ import com.vaadin.flow.data.renderer.ComponentRenderer;
 /**
  * Grid component for displaying PBMs in table format.
  * Handles column setup and rendering logic.
+ * Rows are lightweight {@link PbmSummary} projections, meant to be fetched
+ * lazily page by page; the full PBM is only loaded when its details are opened.
  */
-public class PbmGridComponent extends Grid<Pbm> {
+public class PbmGridComponent extends Grid<PbmSummary> {
 
-    private static final String IMAGE_BASE_URL = "/images/";
-    private static final String GRID_IMAGE_SIZE = "64px";
+    private static final int GRID_IMAGE_SIZE = 64;
 
+    private final ImageUrlService imageUrlService;
     private ComparisonManager comparisonManager;
-    private Consumer<Pbm> onDetailsClick;
+    private Consumer<PbmSummary> onDetailsClick;
 
-    public PbmGridComponent() {
-        super(Pbm.class, false);
+    public PbmGridComponent(ImageUrlService imageUrlService) {
+        super(PbmSummary.class, false);
+        this.imageUrlService = imageUrlService;
         setupColumns();
         addThemeVariants(GridVariant.LUMO_ROW_STRIPES);
     }
@@ -46,17 +51,17 @@ public class PbmGridComponent extends Grid<Pbm> {
                 .setWidth("80px");
 
         // Name column
-        addColumn(Pbm::getName)
+        addColumn(PbmSummary::name)
                 .setHeader("Name")
                 .setAutoWidth(true);
 
         // Type column
-        addColumn(Pbm::getTypeName)
+        addColumn(PbmSummary::typeName)
                 .setHeader("Type")
                 .setAutoWidth(true);
 
         // Brand column
-        addColumn(Pbm::getBrand)
+        addColumn(PbmSummary::brand)
                 .setHeader("Brand")
                 .setAutoWidth(true);
 
@@ -67,7 +72,7 @@ public class PbmGridComponent extends Grid<Pbm> {
                 .setFlexGrow(0);
     }
 
-    private Checkbox createCompareCheckbox(Pbm pbm) {
+    private Checkbox createCompareCheckbox(PbmSummary pbm) {
         Checkbox checkbox = new Checkbox();
 
         if (comparisonManager != null) {
@@ -84,21 +89,20 @@ public class PbmGridComponent extends Grid<Pbm> {
         return checkbox;
     }
 
-    private Div createImageComponent(Pbm pbm) {
+    private Div createImageComponent(PbmSummary pbm) {
         Div container = new Div();
 
-        if (pbm.getImage() != null && !pbm.getImage().isBlank()) {
-            String imageUrl = getImageUrl(pbm.getImage());
-            Image img = new Image(imageUrl, pbm.getName());
-            img.setAlt(pbm.getName());
-            img.setWidth(GRID_IMAGE_SIZE);
+        DisplayedImage image = imageUrlService.displayed(pbm.image(), GRID_IMAGE_SIZE);
+        if (image != null) {
+            Image img = PbmImages.create(image, pbm.name());
+            img.setWidth(GRID_IMAGE_SIZE + "px");
             container.add(img);
         }
 
         return container;
     }
 
-    private Button createDetailsButton(Pbm pbm) {
+    private Button createDetailsButton(PbmSummary pbm) {
         Button btn = new Button("Details");
         btn.addClickListener(ev -> {
             if (onDetailsClick != null) {
@@ -108,20 +112,6 @@ public class PbmGridComponent extends Grid<Pbm> {
         return btn;
     }
 
-    private String getImageUrl(String imagePath) {
-        if (imagePath == null || imagePath.isBlank()) {
-            return "";
-        }
-        String cleanPath = imagePath.startsWith("/") ? imagePath.substring(1) : imagePath;
-
-        // If the path starts with mag_doc, use /static/ prefix, otherwise use /images/
-        if (cleanPath.startsWith("mag_doc/")) {
-            return "/static/" + cleanPath;
-        } else {
-            return IMAGE_BASE_URL + cleanPath;
-        }
-    }
-
     // Public API
 
     public void setComparisonManager(ComparisonManager manager) {
@@ -130,7 +120,7 @@ public class PbmGridComponent extends Grid<Pbm> {
         getDataProvider().refreshAll();
     }
 
-    public void setOnDetailsClick(Consumer<Pbm> callback) {
+    public void setOnDetailsClick(Consumer<PbmSummary> callback) {
         this.onDetailsClick = callback;
     }
 
@@ -0,0 +1,35 @@
+package com.ineos.oxide.pbmgids.ui.components;
+
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
+import com.vaadin.flow.component.html.Image;
+
+/**
+ * Creates the image elements of PBMs from their resolved
+ * {@link DisplayedImage}.
+ */
+public final class PbmImages {
+
+    private PbmImages() {
+    }
+
+    /**
+     * @param image The image, as resolved by the ImageUrlService
+     * @param alt   The alternative text
+     * @return An image element that reserves its space before it is loaded
+     */
+    public static Image create(DisplayedImage image, String alt) {
+        Image img = new Image(image.url(), alt != null ? alt : "");
+        if (image.width() > 0 && image.height() > 0) {
+            // The browser takes the aspect ratio from these, styles still
+            // decide the displayed size
+            img.getElement().setAttribute("width", Integer.toString(image.width()));
+            img.getElement().setAttribute("height", Integer.toString(image.height()));
+        }
+        if (image.srcset() != null) {
+            // Sharper thumbnails on high density screens, same layout size
+            img.getElement().setAttribute("srcset", image.srcset());
+        }
+        img.getElement().setAttribute("loading", "lazy");
+        return img;
+    }
+}
@@ -2,7 +2,9 @@ package com.ineos.oxide.pbmgids.ui.components;
 
 import java.util.function.Consumer;
 
-import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.checkbox.Checkbox;
@@ -20,11 +22,11 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
  */
 public class PbmTileComponent extends Div {
 
-    private static final String IMAGE_BASE_URL = "/images/";
     private static final String TILE_WIDTH = "200px";
-    private static final String IMAGE_SIZE = "120px";
+    private static final int IMAGE_SIZE = 120;
 
-    private final Pbm pbm;
+    private final PbmSummary pbm;
+    private final DisplayedImage image;
     private final Checkbox selectCheckbox;
     private final Button detailsButton;
 
@@ -32,8 +34,9 @@ public class PbmTileComponent extends Div {
     private Consumer<Boolean> onSelectionChange;
     private Runnable onDetailsClick;
 
-    public PbmTileComponent(Pbm pbm) {
+    public PbmTileComponent(PbmSummary pbm, ImageUrlService imageUrlService) {
         this.pbm = pbm;
+        this.image = imageUrlService.displayed(pbm.image(), IMAGE_SIZE);
         this.selectCheckbox = new Checkbox("Compare");
         this.detailsButton = new Button("Details", VaadinIcon.INFO_CIRCLE.create());
 
@@ -64,8 +67,8 @@ public class PbmTileComponent extends Div {
     private Div createImageContainer() {
         Div container = new Div();
         container.getStyle()
-                .set("width", IMAGE_SIZE)
-                .set("height", IMAGE_SIZE)
+                .set("width", IMAGE_SIZE + "px")
+                .set("height", IMAGE_SIZE + "px")
                 .set("margin-bottom", "12px")
                 .set("display", "flex")
                 .set("align-items", "center")
@@ -74,7 +77,7 @@ public class PbmTileComponent extends Div {
                 .set("border-radius", "var(--lumo-border-radius-m)")
                 .set("overflow", "hidden");
 
-        if (hasValidImage()) {
+        if (image != null) {
             container.add(createImage());
         } else {
             container.add(createPlaceholder());
@@ -83,14 +86,8 @@ public class PbmTileComponent extends Div {
         return container;
     }
 
-    private boolean hasValidImage() {
-        return pbm.getImage() != null && !pbm.getImage().isBlank();
-    }
-
     private Image createImage() {
-        String imageUrl = getImageUrl(pbm.getImage());
-        Image img = new Image(imageUrl, pbm.getName());
-        img.setAlt(pbm.getName());
+        Image img = PbmImages.create(image, pbm.name());
         img.getStyle()
                 .set("max-width", "100%")
                 .set("max-height", "100%")
@@ -110,7 +107,7 @@ public class PbmTileComponent extends Div {
     }
 
     private H3 createTitle() {
-        H3 title = new H3(pbm.getName());
+        H3 title = new H3(pbm.name());
         title.getStyle()
                 .set("margin", "0 0 16px 0")
                 .set("font-size", "1.1em")
@@ -169,21 +166,7 @@ public class PbmTileComponent extends Div {
         this.onDetailsClick = callback;
     }
 
-    public Pbm getPbm() {
+    public PbmSummary getPbm() {
         return pbm;
     }
-
-    private String getImageUrl(String imagePath) {
-        if (imagePath == null || imagePath.isBlank()) {
-            return "";
-        }
-        String cleanPath = imagePath.startsWith("/") ? imagePath.substring(1) : imagePath;
-
-        // If the path starts with mag_doc, use /static/ prefix, otherwise use /images/
-        if (cleanPath.startsWith("mag_doc/")) {
-            return "/static/" + cleanPath;
-        } else {
-            return IMAGE_BASE_URL + cleanPath;
-        }
-    }
 }
\ No newline at end of file
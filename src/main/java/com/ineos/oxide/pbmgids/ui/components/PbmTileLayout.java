@@ -3,8 +3,9 @@ package com.ineos.oxide.pbmgids.ui.components;
 import java.util.List;
 import java.util.function.Consumer;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
 import com.ineos.oxide.pbmgids.managers.ComparisonManager;
-import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.projections.PbmSummary;
 import com.vaadin.flow.component.orderedlayout.FlexLayout;
 
 /**
@@ -13,10 +14,12 @@ import com.vaadin.flow.component.orderedlayout.FlexLayout;
  */
 public class PbmTileLayout extends FlexLayout {
 
+    private final ImageUrlService imageUrlService;
     private ComparisonManager comparisonManager;
-    private Consumer<Pbm> onDetailsClick;
+    private Consumer<PbmSummary> onDetailsClick;
 
-    public PbmTileLayout() {
+    public PbmTileLayout(ImageUrlService imageUrlService) {
+        this.imageUrlService = imageUrlService;
         setupLayout();
     }
 
@@ -30,17 +33,17 @@ public class PbmTileLayout extends FlexLayout {
                 .set("box-sizing", "border-box");
     }
 
-    public void updateTiles(List<Pbm> pbms) {
+    public void updateTiles(List<PbmSummary> pbms) {
         removeAll();
 
-        for (Pbm pbm : pbms) {
+        for (PbmSummary pbm : pbms) {
             PbmTileComponent tile = createTile(pbm);
             add(tile);
         }
     }
 
-    private PbmTileComponent createTile(Pbm pbm) {
-        PbmTileComponent tile = new PbmTileComponent(pbm);
+    private PbmTileComponent createTile(PbmSummary pbm) {
+        PbmTileComponent tile = new PbmTileComponent(pbm, imageUrlService);
 
         // Set initial selection state
         if (comparisonManager != null) {
@@ -73,7 +76,7 @@ public class PbmTileLayout extends FlexLayout {
         this.comparisonManager = manager;
     }
 
-    public void setOnDetailsClick(Consumer<Pbm> callback) {
+    public void setOnDetailsClick(Consumer<PbmSummary> callback) {
         this.onDetailsClick = callback;
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.ineos.oxide.pbmgids.ui.dialogs;
 
 import java.util.List;
 
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
 import com.ineos.oxide.pbmgids.services.CatalogService;
 import com.ineos.oxide.pbmgids.ui.components.PbmComparisonComponent;
@@ -20,13 +21,15 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 public class PbmComparisonDialog extends Dialog {
     private static final long serialVersionUID = 1L;
 
+    private final CatalogService catalogService;
     private final PbmComparisonComponent comparisonComponent;
     private final H2 titleLabel;
 
-    public PbmComparisonDialog(CatalogService catalogService) {
+    public PbmComparisonDialog(CatalogService catalogService, ImageUrlService imageUrlService) {
+        this.catalogService = catalogService;
         setupDialog();
 
-        this.comparisonComponent = new PbmComparisonComponent(catalogService);
+        this.comparisonComponent = new PbmComparisonComponent(catalogService, imageUrlService);
         this.titleLabel = new H2("PBM Comparison");
 
         createLayout();
@@ -86,6 +89,7 @@ public class PbmComparisonDialog extends Dialog {
             return;
         }
 
+        pbms.forEach(catalogService::recordHit);
         titleLabel.setText("PBM Comparison (" + pbms.size() + " items)");
         comparisonComponent.showComparison(pbms);
         open();
@@ -2,11 +2,14 @@ package com.ineos.oxide.pbmgids.ui.dialogs;
 
 import java.util.List;
 
-import com.ineos.oxide.pbmgids.model.entities.Category;
+import com.ineos.oxide.pbmgids.categories.CategoryTree;
+import com.ineos.oxide.pbmgids.files.ImageUrlService;
+import com.ineos.oxide.pbmgids.files.ImageUrlService.DisplayedImage;
 import com.ineos.oxide.pbmgids.model.entities.Pbm;
 import com.ineos.oxide.pbmgids.services.CatalogService;
 import com.ineos.oxide.pbmgids.ui.components.PbmContentComponent;
 import com.ineos.oxide.pbmgids.ui.components.PbmContentComponent.ContentSection;
+import com.ineos.oxide.pbmgids.ui.components.PbmImages;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.dialog.Dialog;
@@ -28,10 +31,14 @@ import com.vaadin.flow.component.tabs.TabSheet;
 public class PbmDetailsDialog extends Dialog {
     private static final long serialVersionUID = 1L;
 
+    private static final int IMAGE_SIZE = 280;
+
     private final CatalogService catalogService;
+    private final ImageUrlService imageUrlService;
 
-    public PbmDetailsDialog(CatalogService catalogService) {
+    public PbmDetailsDialog(CatalogService catalogService, ImageUrlService imageUrlService) {
         this.catalogService = catalogService;
+        this.imageUrlService = imageUrlService;
         setupDialog();
     }
 
@@ -53,6 +60,7 @@ public class PbmDetailsDialog extends Dialog {
             return;
         }
 
+        catalogService.recordHit(pbm);
         removeAll();
 
         // Create dialog layout
@@ -88,12 +96,11 @@ public class PbmDetailsDialog extends Dialog {
         imageLayout.setWidth("300px");
         imageLayout.setFlexGrow(0);
 
-        if (pbm.getImage() != null && !pbm.getImage().isBlank()) {
-            String imageUrl = getImageUrl(pbm.getImage());
-            Image img = new Image(imageUrl, pbm.getName());
-            img.setAlt(pbm.getName());
-            img.setMaxWidth("280px");
-            img.setMaxHeight("280px");
+        DisplayedImage image = imageUrlService.displayed(pbm.getImage(), IMAGE_SIZE);
+        if (image != null) {
+            Image img = PbmImages.create(image, pbm.getName());
+            img.setMaxWidth(IMAGE_SIZE + "px");
+            img.setMaxHeight(IMAGE_SIZE + "px");
             img.getStyle().set("object-fit", "contain");
             imageLayout.add(img);
         } else {
@@ -181,22 +188,6 @@ public class PbmDetailsDialog extends Dialog {
         return footerLayout;
     }
 
-    private String getImageUrl(String imagePath) {
-        if (imagePath == null || imagePath.isBlank()) {
-            return "/images/placeholder.png";
-        }
-
-        // Remove leading slash if present
-        String cleanPath = imagePath.startsWith("/") ? imagePath.substring(1) : imagePath;
-
-        // If the path starts with mag_doc, use /static/ prefix, otherwise use /images/
-        if (cleanPath.startsWith("mag_doc/")) {
-            return "/static/" + cleanPath;
-        } else {
-            return "/images/" + cleanPath;
-        }
-    }
-
     /**
      * Clears the dialog content and closes it
      */
@@ -214,30 +205,30 @@ public class PbmDetailsDialog extends Dialog {
             return layout;
         }
 
-        List<Category> allCategories = catalogService.getAllCategoriesWithParents(pbm);
+        List<CategoryTree.Node> allCategories = catalogService.getAllCategoriesWithParents(pbm);
 
         // Deduplicate by ID and name
-        java.util.Map<String, Category> uniqueCategories = new java.util.LinkedHashMap<>();
-        for (Category category : allCategories) {
-            if (category.getId() != null && !uniqueCategories.containsKey(category.getName())) {
-                uniqueCategories.put(category.getName(), category);
+        java.util.Map<String, CategoryTree.Node> uniqueCategories = new java.util.LinkedHashMap<>();
+        for (CategoryTree.Node category : allCategories) {
+            if (category.id() != null && !uniqueCategories.containsKey(category.name())) {
+                uniqueCategories.put(category.name(), category);
             }
         }
 
-        List<Category> categories = new java.util.ArrayList<>(uniqueCategories.values());
+        List<CategoryTree.Node> categories = new java.util.ArrayList<>(uniqueCategories.values());
 
         // Find root categories
         java.util.Set<Integer> parentIds = new java.util.HashSet<>();
-        for (Category category : categories) {
-            if (category.getParent() != null) {
-                parentIds.add(category.getParent().getId());
+        for (CategoryTree.Node category : categories) {
+            if (category.parentId() != null) {
+                parentIds.add(category.parentId());
             }
         }
 
         // Create badges
-        for (Category category : categories) {
-            Span badge = new Span(category.getName());
-            if (!parentIds.contains(category.getId())) {
+        for (CategoryTree.Node category : categories) {
+            Span badge = new Span(category.name());
+            if (!parentIds.contains(category.id())) {
                 badge.getElement().getThemeList().add("badge success primary pill");
             } else {
                 badge.getElement().getThemeList().add("badge primary pill");
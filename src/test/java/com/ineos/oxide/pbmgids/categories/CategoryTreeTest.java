@@ -0,0 +1,112 @@
+package com.ineos.oxide.pbmgids.categories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.ineos.oxide.pbmgids.model.projections.CategoryLink;
+
+class CategoryTreeTest {
+
+    private record Link(Integer getId, Integer getParentId, String getName, Boolean getPublished)
+            implements CategoryLink {
+    }
+
+    //   1 Hand          (legacy parent id 0)
+    //     3 Chemisch
+    //       5 Nitril   (unpublished)
+    //         6 Lang
+    //     2 Anti-snij
+    //   4 Voet
+    //   9 Wees        (parent 99 does not exist)
+    private static final CategoryTree TREE = CategoryTree.build(List.of(
+            new Link(1, 0, "Hand", true),
+            new Link(2, 1, "Anti-snij", true),
+            new Link(3, 1, "Chemisch", true),
+            new Link(4, null, "Voet", true),
+            new Link(5, 3, "Nitril", false),
+            new Link(6, 5, "Lang", true),
+            new Link(9, 99, "Wees", true)));
+
+    @Test
+    void rootsAndChildrenAreOrderedByName() {
+        assertThat(TREE.getRoots()).extracting(CategoryTree.Node::id).containsExactly(1, 4, 9);
+        assertThat(TREE.getChildren(1)).extracting(CategoryTree.Node::id).containsExactly(2, 3);
+        assertThat(TREE.get(1).parentId()).isNull();
+        assertThat(TREE.isLeaf(6)).isTrue();
+    }
+
+    @Test
+    void pathRunsFromCategoryToRoot() {
+        assertThat(TREE.getPath(6)).containsExactly(6, 5, 3, 1);
+        assertThat(TREE.getPath(4)).containsExactly(4);
+        assertThat(TREE.getPath(9)).containsExactly(9);
+        assertThat(TREE.getPath(42)).isEmpty();
+        assertThat(TREE.getPath(null)).isEmpty();
+    }
+
+    @Test
+    void pathIsACopy() {
+        TREE.getPath(6)[0] = 42;
+
+        assertThat(TREE.getPath(6)).containsExactly(6, 5, 3, 1);
+    }
+
+    @Test
+    void hierarchyListsSharedAncestorsOnce() {
+        assertThat(TREE.getHierarchy(List.of(6, 2))).extracting(CategoryTree.Node::id)
+                .containsExactly(6, 5, 3, 1, 2);
+    }
+
+    @Test
+    void subtreeIsTheContiguousPreorderRange() {
+        assertThat(TREE.getSubtreeIds(1)).containsExactly(1, 2, 3, 5, 6);
+        assertThat(TREE.getSubtreeIds(3)).containsExactly(3, 5, 6);
+        assertThat(TREE.getSubtreeIds(6)).containsExactly(6);
+        assertThat(TREE.getSubtreeIds(4)).containsExactly(4);
+    }
+
+    @Test
+    void subtreeOfUnknownCategoryIsTheCategoryItself() {
+        assertThat(TREE.getSubtreeIds(42)).containsExactly(42);
+        assertThat(TREE.getSubtreeIds(null)).isEmpty();
+    }
+
+    @Test
+    void publishedSubtreeSkipsUnpublishedBranches() {
+        assertThat(TREE.getPublishedSubtreeIds(1)).containsExactly(1, 2, 3);
+        assertThat(TREE.getPublishedSubtreeIds(5)).isEmpty();
+        assertThat(TREE.getPublishedSubtreeIds(6)).isEmpty();
+    }
+
+    @Test
+    void categoryIsPublishedOnlyWithAllItsAncestors() {
+        assertThat(TREE.isPublished(3)).isTrue();
+        assertThat(TREE.isPublished(5)).isFalse();
+        assertThat(TREE.isPublished(6)).isFalse();
+        assertThat(TREE.isPublished(42)).isFalse();
+    }
+
+    @Test
+    void changesRenumberTheSubtrees() {
+        CategoryTree changed = TREE.withChanges(List.of(new Link(7, 4, "Laars", true), new Link(6, 2, "Lang", true)),
+                Set.of(5));
+
+        assertThat(changed.getSubtreeIds(1)).containsExactly(1, 2, 6, 3);
+        assertThat(changed.getSubtreeIds(4)).containsExactly(4, 7);
+        assertThat(changed.getPath(6)).containsExactly(6, 2, 1);
+        assertThat(TREE.getSubtreeIds(1)).containsExactly(1, 2, 3, 5, 6);
+    }
+
+    @Test
+    void cycleDoesNotHang() {
+        CategoryTree cyclic = CategoryTree.build(List.of(new Link(1, 2, "A", true), new Link(2, 1, "B", true)));
+
+        assertThat(cyclic.getPath(1)).startsWith(1).hasSizeLessThanOrEqualTo(2);
+        assertThat(cyclic.getRoots()).isEmpty();
+        assertThat(cyclic.getSubtreeIds(1)).containsExactly(1);
+    }
+}
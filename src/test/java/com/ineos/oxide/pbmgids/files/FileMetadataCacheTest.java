@@ -0,0 +1,70 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileMetadataCacheTest {
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private final FileMetadataCache fileMetadataCache = new FileMetadataCache(null, null, null);
+
+    @Test
+    void eTagComesFromTheTimeBeforeAScan() throws IOException {
+        Path path = write("manual.txt", LAST_MODIFIED);
+
+        assertThat(fileMetadataCache.get(path).eTag())
+                .isEqualTo("\"" + Long.toHexString(Files.size(path)) + "-" + Long.toHexString(LAST_MODIFIED) + "\"");
+    }
+
+    @Test
+    void eTagComesFromTheChecksumAfterAScan() throws IOException {
+        Path path = write("manual.txt", LAST_MODIFIED);
+        FileMetadata before = fileMetadataCache.get(path);
+
+        fileMetadataCache.update(Map.of(path, new ScannedFile(path, before.size(), LAST_MODIFIED, "0badcafe")));
+
+        assertThat(fileMetadataCache.get(path).eTag())
+                .isEqualTo("\"" + Long.toHexString(before.size()) + "-0badcafe\"");
+    }
+
+    @Test
+    void checksumOfAnotherVersionIsNotUsed() throws IOException {
+        Path path = write("manual.txt", LAST_MODIFIED);
+        long size = Files.size(path);
+        fileMetadataCache.update(Map.of(path, new ScannedFile(path, size, LAST_MODIFIED, "0badcafe")));
+
+        Files.setLastModifiedTime(path, FileTime.fromMillis(LAST_MODIFIED + 1000));
+
+        assertThat(fileMetadataCache.get(path).eTag())
+                .isEqualTo("\"" + Long.toHexString(size) + "-" + Long.toHexString(LAST_MODIFIED + 1000) + "\"");
+    }
+
+    @Test
+    void missingFilesHaveNoMetadata() throws IOException {
+        Path path = write("manual.txt", LAST_MODIFIED);
+        fileMetadataCache.get(path);
+
+        Files.delete(path);
+
+        assertThat(fileMetadataCache.get(path)).isNull();
+        assertThat(fileMetadataCache.get(directory)).isNull();
+    }
+
+    private Path write(String name, long lastModified) throws IOException {
+        Path path = directory.resolve(name);
+        Files.writeString(path, "content of " + name);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+        return path;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileScannerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compressedVariantsOfAFileAreDerived() throws IOException {
+        write("manual.html");
+
+        assertThat(FileScanner.isDerived(write("manual.html.gz"))).isTrue();
+        assertThat(FileScanner.isDerived(write("manual.html.br"))).isTrue();
+    }
+
+    @Test
+    void compressedFilesOfTheirOwnAreNotDerived() throws IOException {
+        assertThat(FileScanner.isDerived(write("archive.tar.gz"))).isFalse();
+        assertThat(FileScanner.isDerived(write("font.br"))).isFalse();
+    }
+
+    @Test
+    void onlyOurOwnTemporaryFilesAreDerived() throws IOException {
+        assertThat(FileScanner.isDerived(write(".precompress123456.tmp"))).isTrue();
+        assertThat(FileScanner.isDerived(write(".thumbnail123456.tmp"))).isTrue();
+        assertThat(FileScanner.isDerived(write("upload.tmp"))).isFalse();
+        assertThat(FileScanner.isDerived(write("manual.html"))).isFalse();
+    }
+
+    private Path write(String name) throws IOException {
+        return Files.writeString(directory.resolve(name), "content of " + name);
+    }
+}
@@ -0,0 +1,167 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class FileSenderTest {
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private final FileSender fileSender = new FileSender();
+
+    @Test
+    void selectsASingleRange() {
+        assertThat(FileSender.selectRange("bytes=2-5", 10)).isEqualTo(new FileSender.ByteRange(2, 5));
+        assertThat(FileSender.selectRange("bytes=7-", 10)).isEqualTo(new FileSender.ByteRange(7, 9));
+        assertThat(FileSender.selectRange("bytes=-3", 10)).isEqualTo(new FileSender.ByteRange(7, 9));
+        assertThat(FileSender.selectRange("bytes=5-100", 10)).isEqualTo(new FileSender.ByteRange(5, 9));
+    }
+
+    @Test
+    void ignoresInvalidHeadersAndSeveralRanges() {
+        assertThat(FileSender.selectRange("bytes=5-2", 10)).isNull();
+        assertThat(FileSender.selectRange("bytes=abc", 10)).isNull();
+        assertThat(FileSender.selectRange("items=0-5", 10)).isNull();
+        assertThat(FileSender.selectRange("bytes=0-1,4-5", 10)).isNull();
+    }
+
+    @Test
+    void rejectsRangesOutsideOfTheFile() {
+        assertThat(FileSender.selectRange("bytes=10-", 10)).isSameAs(FileSender.ByteRange.UNSATISFIABLE);
+        assertThat(FileSender.selectRange("bytes=20-30", 10)).isSameAs(FileSender.ByteRange.UNSATISFIABLE);
+        assertThat(FileSender.selectRange("bytes=-0", 10)).isSameAs(FileSender.ByteRange.UNSATISFIABLE);
+        assertThat(FileSender.selectRange("bytes=0-", 0)).isSameAs(FileSender.ByteRange.UNSATISFIABLE);
+    }
+
+    @Test
+    void sendsTheWholeFile() throws IOException {
+        MockHttpServletResponse response = send(file("0123456789"), request());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNotNull();
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    }
+
+    @Test
+    void sendsPartialContent() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        MockHttpServletResponse response = send(file("0123456789"), request);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void sendsTheWholeFileForAnInvalidRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-2");
+
+        MockHttpServletResponse response = send(file("0123456789"), request);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void answersUnsatisfiableRangesWith416() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-");
+
+        MockHttpServletResponse response = send(file("0123456789"), request);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void sendsRangeWhenIfRangeMatches() throws IOException {
+        FileMetadata file = file("0123456789");
+        MockHttpServletRequest byETag = request();
+        byETag.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        byETag.addHeader(HttpHeaders.IF_RANGE, file.eTag());
+        MockHttpServletRequest byDate = request();
+        byDate.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        byDate.addHeader(HttpHeaders.IF_RANGE, LAST_MODIFIED);
+
+        assertThat(send(file, byETag).getStatus()).isEqualTo(206);
+        assertThat(send(file, byDate).getStatus()).isEqualTo(206);
+    }
+
+    @Test
+    void sendsTheWholeFileWhenIfRangeIsStale() throws IOException {
+        FileMetadata file = file("0123456789");
+        MockHttpServletRequest byETag = request();
+        byETag.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        byETag.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        MockHttpServletRequest byWeakETag = request();
+        byWeakETag.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        byWeakETag.addHeader(HttpHeaders.IF_RANGE, "W/" + file.eTag());
+        MockHttpServletRequest byDate = request();
+        byDate.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        byDate.addHeader(HttpHeaders.IF_RANGE, LAST_MODIFIED - 60_000);
+
+        assertThat(send(file, byETag).getContentAsString()).isEqualTo("0123456789");
+        assertThat(send(file, byWeakETag).getContentAsString()).isEqualTo("0123456789");
+        assertThat(send(file, byDate).getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void answersRevalidationsWith304() throws IOException {
+        FileMetadata file = file("0123456789");
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, file.eTag());
+
+        MockHttpServletResponse response = send(file, request);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void leavesTheResponseUntouchedWhenTheFileIsGone() throws IOException {
+        FileMetadata file = file("0123456789");
+        Files.delete(file.path());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThatExceptionOfType(NoSuchFileException.class)
+                .isThrownBy(() -> fileSender.send(file, CacheControl.noCache(), null, request(), response));
+        assertThat(response.getHeaderNames()).isEmpty();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.isCommitted()).isFalse();
+    }
+
+    private FileMetadata file(String content) throws IOException {
+        Path path = Files.writeString(directory.resolve("file.txt"), content, StandardCharsets.UTF_8);
+        return FileMetadata.of(path, Files.size(path), LAST_MODIFIED, "text/plain", null);
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/static/file.txt");
+    }
+
+    private MockHttpServletResponse send(FileMetadata file, MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileSender.send(file, CacheControl.noCache(), null, request, response);
+        return response;
+    }
+}
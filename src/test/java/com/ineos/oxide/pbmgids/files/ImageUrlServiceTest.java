@@ -0,0 +1,30 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ImageUrlServiceTest {
+
+    @Test
+    void configuredSizesAreKept() {
+        for (int size : ThumbnailService.SIZES) {
+            assertThat(ImageUrlService.nearestSize(size)).isEqualTo(size);
+        }
+    }
+
+    @Test
+    void otherSizesFallBackToTheNearest() {
+        assertThat(ImageUrlService.nearestSize(1)).isEqualTo(64);
+        assertThat(ImageUrlService.nearestSize(100)).isEqualTo(120);
+        assertThat(ImageUrlService.nearestSize(150)).isEqualTo(160);
+        assertThat(ImageUrlService.nearestSize(220)).isEqualTo(280);
+        assertThat(ImageUrlService.nearestSize(1000)).isEqualTo(280);
+    }
+
+    @Test
+    void tiesGoToTheLargerSize() {
+        assertThat(ImageUrlService.nearestSize(92)).isEqualTo(120);
+        assertThat(ImageUrlService.nearestSize(140)).isEqualTo(160);
+    }
+}
@@ -0,0 +1,87 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PrecompressedFilesTest {
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    private final FileMetadataCache fileMetadataCache = new FileMetadataCache(null, null, null);
+    private final PrecompressedFiles precompressedFiles = new PrecompressedFiles(fileMetadataCache, false);
+
+    @Test
+    void acceptsListedCodings() {
+        assertThat(PrecompressedFiles.accepts("gzip", "gzip")).isTrue();
+        assertThat(PrecompressedFiles.accepts("deflate, GZIP, br", "gzip")).isTrue();
+        assertThat(PrecompressedFiles.accepts("deflate, br", "gzip")).isFalse();
+        assertThat(PrecompressedFiles.accepts("", "gzip")).isFalse();
+    }
+
+    @Test
+    void acceptsByQuality() {
+        assertThat(PrecompressedFiles.accepts("gzip;q=0.5, br;q=1.0", "gzip")).isTrue();
+        assertThat(PrecompressedFiles.accepts("gzip ; q=0.001", "gzip")).isTrue();
+        assertThat(PrecompressedFiles.accepts("gzip;q=0, br", "gzip")).isFalse();
+        assertThat(PrecompressedFiles.accepts("gzip;q=0.000", "gzip")).isFalse();
+        assertThat(PrecompressedFiles.accepts("gzip;q=abc", "gzip")).isFalse();
+    }
+
+    @Test
+    void selectsAVariantWithTheTimeOfTheFile() throws IOException {
+        FileMetadata file = write("manual.html", LAST_MODIFIED);
+        write("manual.html.gz", LAST_MODIFIED);
+
+        FileMetadata selected = precompressedFiles.select(file, "gzip, deflate");
+
+        assertThat(selected.path()).isEqualTo(directory.resolve("manual.html.gz"));
+        assertThat(selected.encoding()).isEqualTo(PrecompressedFiles.GZIP);
+        assertThat(selected.mimeType()).isEqualTo(file.mimeType());
+    }
+
+    @Test
+    void prefersBrotliWhenAccepted() throws IOException {
+        FileMetadata file = write("manual.html", LAST_MODIFIED);
+        write("manual.html.gz", LAST_MODIFIED);
+        write("manual.html.br", LAST_MODIFIED);
+
+        assertThat(precompressedFiles.select(file, "gzip, br").encoding()).isEqualTo(PrecompressedFiles.BROTLI);
+        assertThat(precompressedFiles.select(file, "gzip, br;q=0").encoding()).isEqualTo(PrecompressedFiles.GZIP);
+    }
+
+    @Test
+    void skipsAVariantOfAnotherVersion() throws IOException {
+        FileMetadata newer = write("manual.html", LAST_MODIFIED);
+        write("manual.html.gz", LAST_MODIFIED - 1000);
+        assertThat(precompressedFiles.select(newer, "gzip")).isSameAs(newer);
+
+        // A file restored to an older version
+        FileMetadata older = write("manual.html", LAST_MODIFIED - 2000);
+        assertThat(precompressedFiles.select(older, "gzip")).isSameAs(older);
+    }
+
+    @Test
+    void sendsTheFileItselfWithoutAcceptedCoding() throws IOException {
+        FileMetadata file = write("manual.html", LAST_MODIFIED);
+        write("manual.html.gz", LAST_MODIFIED);
+
+        assertThat(precompressedFiles.select(file, null)).isSameAs(file);
+        assertThat(precompressedFiles.select(file, "identity")).isSameAs(file);
+    }
+
+    private FileMetadata write(String name, long lastModified) throws IOException {
+        Path path = directory.resolve(name);
+        Files.writeString(path, "<html>" + name + "</html>");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+        return fileMetadataCache.get(path);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ineos.oxide.pbmgids.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class ThumbnailServiceTest {
+
+    @Test
+    void fitKeepsImagesThatAlreadyFit() {
+        assertThat(ThumbnailService.fit(100, 50, 120)).isEqualTo(new Dimension(100, 50));
+        assertThat(ThumbnailService.fit(120, 120, 120)).isEqualTo(new Dimension(120, 120));
+    }
+
+    @Test
+    void fitScalesTheLongestSideToTheSize() {
+        assertThat(ThumbnailService.fit(1000, 500, 120)).isEqualTo(new Dimension(120, 60));
+        assertThat(ThumbnailService.fit(500, 1000, 120)).isEqualTo(new Dimension(60, 120));
+        assertThat(ThumbnailService.fit(300, 300, 64)).isEqualTo(new Dimension(64, 64));
+        assertThat(ThumbnailService.fit(1000, 333, 280)).isEqualTo(new Dimension(280, 93));
+    }
+
+    @Test
+    void fitKeepsAtLeastOnePixel() {
+        assertThat(ThumbnailService.fit(10_000, 10, 64)).isEqualTo(new Dimension(64, 1));
+        assertThat(ThumbnailService.fit(10, 10_000, 64)).isEqualTo(new Dimension(1, 64));
+    }
+
+    @Test
+    void resizeFitsTheImage() {
+        BufferedImage scaled = ThumbnailService.resize(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), 120,
+                false);
+
+        assertThat(scaled.getWidth()).isEqualTo(120);
+        assertThat(scaled.getHeight()).isEqualTo(60);
+    }
+
+    @Test
+    void everySizeIsMadeAtEveryDensity() {
+        assertThat(ThumbnailService.PIXEL_SIZES).contains(64, 128, 280, 560).hasSize(ThumbnailService.SIZES.size()
+                * ThumbnailService.MAX_DENSITY);
+    }
+
+    @Test
+    void imagePathIsTheReverseOfTheThumbnailPath() {
+        Path image = FileRoots.IMAGES.resolve("pbm/glove.gif");
+        Path document = FileRoots.STATIC.resolve("mag_doc/logo.jpeg");
+
+        assertThat(ThumbnailService.imagePath(ThumbnailService.thumbnailPath(image, 240))).isEqualTo(image);
+        assertThat(ThumbnailService.imagePath(ThumbnailService.thumbnailPath(document, 64))).isEqualTo(document);
+    }
+
+    @Test
+    void imagePathRejectsOtherFiles() {
+        assertThat(ThumbnailService.imagePath(FileRoots.THUMBNAILS.resolve("100/images/pbm/glove.jpg.jpg"))).isNull();
+        assertThat(ThumbnailService.imagePath(FileRoots.THUMBNAILS.resolve("64/images/pbm/glove.gif.jpg"))).isNull();
+        assertThat(ThumbnailService.imagePath(FileRoots.THUMBNAILS.resolve("64/other/glove.jpg.jpg"))).isNull();
+        assertThat(ThumbnailService.imagePath(FileRoots.THUMBNAILS.resolve("64/images"))).isNull();
+        assertThat(ThumbnailService.imagePath(FileRoots.IMAGES.resolve("pbm/glove.jpg"))).isNull();
+    }
+}
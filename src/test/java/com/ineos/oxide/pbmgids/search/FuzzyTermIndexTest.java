@@ -0,0 +1,96 @@
+package com.ineos.oxide.pbmgids.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class FuzzyTermIndexTest {
+
+    @Test
+    void allowedDistanceGrowsWithTokenLength() {
+        assertThat(FuzzyTermIndex.maxDistance("bri")).isZero();
+        assertThat(FuzzyTermIndex.maxDistance("bril")).isEqualTo(1);
+        assertThat(FuzzyTermIndex.maxDistance("handsch")).isEqualTo(1);
+        assertThat(FuzzyTermIndex.maxDistance("handscho")).isEqualTo(2);
+    }
+
+    @Test
+    void verifyComputesTheEditDistance() {
+        assertThat(FuzzyTermIndex.verify("handschoen", "handschoen", 2))
+                .isEqualTo(new FuzzyTermIndex.Match("handschoen", 0, false));
+        assertThat(FuzzyTermIndex.verify("handscoen", "handschoen", 2))
+                .isEqualTo(new FuzzyTermIndex.Match("handschoen", 1, false));
+        assertThat(FuzzyTermIndex.verify("hnadschoen", "handschoen", 2))
+                .isEqualTo(new FuzzyTermIndex.Match("handschoen", 2, false));
+    }
+
+    @Test
+    void verifyGivesUpBeyondTheBound() {
+        assertThat(FuzzyTermIndex.verify("handschoen", "helm", 2)).isNull();
+        assertThat(FuzzyTermIndex.verify("hnadscoen", "handschoen", 2)).isNull();
+        assertThat(FuzzyTermIndex.verify("bril", "brol", 0)).isNull();
+    }
+
+    @Test
+    void verifyMatchesAMisspelledPrefix() {
+        assertThat(FuzzyTermIndex.verify("handscoe", "handschoenen", 2))
+                .isEqualTo(new FuzzyTermIndex.Match("handschoenen", 1, true));
+    }
+
+    @Test
+    void verifyPrefersTheWholeTermOverAPrefix() {
+        assertThat(FuzzyTermIndex.verify("laarzen", "laarzn", 1))
+                .isEqualTo(new FuzzyTermIndex.Match("laarzn", 1, false));
+    }
+
+    @Test
+    void matchFindsCloseTermsOnly() {
+        FuzzyTermIndex index = new FuzzyTermIndex();
+        index.add("handschoen");
+        index.add("handschoenen");
+        index.add("helm");
+        index.add("veiligheidsbril");
+
+        assertThat(index.match("handscoen")).extracting(FuzzyTermIndex.Match::term)
+                .containsExactlyInAnyOrder("handschoen", "handschoenen");
+        assertThat(index.match("veiligheidsbirl")).extracting(FuzzyTermIndex.Match::term)
+                .containsExactly("veiligheidsbril");
+        assertThat(index.match("hlem")).isEmpty();
+        assertThat(index.match("hel")).isEmpty();
+    }
+
+    @Test
+    void termIsKeptWhileReferenced() {
+        FuzzyTermIndex index = new FuzzyTermIndex();
+        index.add("helm");
+        index.add("helm");
+
+        index.remove("helm");
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.match("halm")).extracting(FuzzyTermIndex.Match::term).containsExactly("helm");
+
+        index.remove("helm");
+        assertThat(index.size()).isZero();
+        assertThat(index.match("halm")).isEmpty();
+    }
+
+    @Test
+    void largeVocabularyFindsTheSameMatches() {
+        FuzzyTermIndex index = new FuzzyTermIndex();
+        Random random = new Random(42);
+        for (int i = 0; i < 40_000; i++) {
+            StringBuilder term = new StringBuilder();
+            int length = 5 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                term.append((char) ('a' + random.nextInt(26)));
+            }
+            index.add(term.toString());
+        }
+        index.add("veiligheidsschoen");
+
+        assertThat(index.match("veiligheidschoen")).extracting(FuzzyTermIndex.Match::term)
+                .contains("veiligheidsschoen");
+    }
+}
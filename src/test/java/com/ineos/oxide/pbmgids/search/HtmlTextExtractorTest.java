@@ -0,0 +1,73 @@
+package com.ineos.oxide.pbmgids.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class HtmlTextExtractorTest {
+
+    @Test
+    void emptyInputGivesEmptyText() {
+        assertThat(HtmlTextExtractor.extract(null)).isEmpty();
+        assertThat(HtmlTextExtractor.extract("")).isEmpty();
+        assertThat(HtmlTextExtractor.extract("<p> </p>")).isEmpty();
+    }
+
+    @Test
+    void tagsBreakWords() {
+        assertThat(HtmlTextExtractor.extract("<ul><li>EN 166</li><li>EN 170</li></ul>")).isEqualTo("EN 166 EN 170");
+        assertThat(HtmlTextExtractor.extract("Nitril<br/>handschoen")).isEqualTo("Nitril handschoen");
+        assertThat(HtmlTextExtractor.extract("<p class=\"x\">Veiligheids<b>bril</b></p>"))
+                .isEqualTo("Veiligheids bril");
+    }
+
+    @Test
+    void whitespaceCollapses() {
+        assertThat(HtmlTextExtractor.extract("  <p>\n\tGehoor \r\n  bescherming </p>  "))
+                .isEqualTo("Gehoor bescherming");
+    }
+
+    @Test
+    void entitiesAreDecoded() {
+        assertThat(HtmlTextExtractor.extract("Zuur &amp; loog &lt;5&gt;")).isEqualTo("Zuur & loog <5>");
+        assertThat(HtmlTextExtractor.extract("caf&eacute; caf&#233; caf&#xE9; caf&#XE9;"))
+                .isEqualTo("café café café café");
+        assertThat(HtmlTextExtractor.extract("EN&nbsp;388")).isEqualTo("EN 388");
+        assertThat(HtmlTextExtractor.extract("&AMP;")).isEqualTo("&");
+    }
+
+    @Test
+    void unknownEntitiesAreKept() {
+        assertThat(HtmlTextExtractor.extract("AT&T")).isEqualTo("AT&T");
+        assertThat(HtmlTextExtractor.extract("&foo; &amp")).isEqualTo("&foo; &amp");
+        assertThat(HtmlTextExtractor.extract("&#xZZ; &#99999999;")).isEqualTo("&#xZZ; &#99999999;");
+        assertThat(HtmlTextExtractor.extract("a & b; c")).isEqualTo("a & b; c");
+    }
+
+    @Test
+    void scriptAndStyleContentIsSkipped() {
+        assertThat(HtmlTextExtractor.extract("a<script>var x = '<b>';</script>b")).isEqualTo("a b");
+        assertThat(HtmlTextExtractor.extract("a<STYLE type=\"text/css\">p { color: red }</Style>b"))
+                .isEqualTo("a b");
+        assertThat(HtmlTextExtractor.extract("a<script>alert(1)")).isEqualTo("a");
+    }
+
+    @Test
+    void commentsAreSkipped() {
+        assertThat(HtmlTextExtractor.extract("a <!-- <b>verborgen</b> --> b")).isEqualTo("a b");
+        assertThat(HtmlTextExtractor.extract("a<!-- nooit gesloten")).isEqualTo("a");
+    }
+
+    @Test
+    void unterminatedTagsAreKeptAsText() {
+        assertThat(HtmlTextExtractor.extract("maat <b")).isEqualTo("maat <b");
+        assertThat(HtmlTextExtractor.extract("<p>maat </p")).isEqualTo("maat </p");
+    }
+
+    @Test
+    void lessThanSignsOutsideOfTagsAreText() {
+        assertThat(HtmlTextExtractor.extract("a < b")).isEqualTo("a < b");
+        assertThat(HtmlTextExtractor.extract("x<3")).isEqualTo("x<3");
+        assertThat(HtmlTextExtractor.extract("eindigt op <")).isEqualTo("eindigt op <");
+    }
+}
@@ -0,0 +1,93 @@
+package com.ineos.oxide.pbmgids.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class PbmSearchIndexTest {
+
+    private static Map<SearchField, String> named(String name) {
+        return Map.of(SearchField.NAME, name);
+    }
+
+    @Test
+    void popularityDoesNotLiftAPrefixMatchAboveAnExactOne() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, named("Helm"), 0);
+        index.put(2, named("Helmet"), Integer.MAX_VALUE);
+
+        assertThat(index.search("helm")).extracting(SearchHit::pbmId).containsExactly(1, 2);
+    }
+
+    @Test
+    void popularityDoesNotLiftAnInfixMatchAboveAPrefixOne() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, named("Helmet"), 0);
+        index.put(2, named("Veiligheidshelm"), Integer.MAX_VALUE);
+
+        assertThat(index.search("helm")).extracting(SearchHit::pbmId).containsExactly(1, 2);
+    }
+
+    @Test
+    void popularityOrdersMatchesOfTheSameKind() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, named("Helm alpha"), 10);
+        index.put(2, named("Helm beta"), 10_000);
+        index.put(3, named("Helm gamma"), 10);
+
+        assertThat(index.search("helm")).extracting(SearchHit::pbmId).containsExactly(2, 1, 3);
+    }
+
+    @Test
+    void fuzzyMatchScoresBelowTheSameFieldMatchedExactly() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, named("Handschoen"), Integer.MAX_VALUE);
+
+        double fuzzy = index.search("handscoen").get(0).score();
+        double exact = index.search("handschoen").get(0).score();
+
+        assertThat(fuzzy).isLessThan(exact / Popularity.MAX_BOOST);
+    }
+
+    @Test
+    void updatedHitsRankAsIfPutWithThem() {
+        PbmSearchIndex updated = new PbmSearchIndex();
+        updated.put(1, named("Helm alpha"), 0);
+        updated.put(2, named("Helm beta"), 0);
+        updated.updateHits(2, 5_000);
+
+        PbmSearchIndex put = new PbmSearchIndex();
+        put.put(1, named("Helm alpha"), 0);
+        put.put(2, named("Helm beta"), 5_000);
+
+        assertThat(updated.search("helm")).extracting(SearchHit::pbmId).containsExactly(2, 1);
+        assertThat(updated.search("helm").get(0).score()).isCloseTo(put.search("helm").get(0).score(),
+                within(1e-9));
+
+        updated.updateHits(2, 0);
+        assertThat(updated.search("helm")).extracting(SearchHit::pbmId).containsExactly(1, 2);
+    }
+
+    @Test
+    void everyTokenHasToMatch() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, Map.of(SearchField.NAME, "Nitril handschoen", SearchField.BRAND, "Ansell"), 0);
+        index.put(2, named("Latex handschoen"), 0);
+
+        assertThat(index.search("ansell handschoen")).extracting(SearchHit::pbmId).containsExactly(1);
+        assertThat(index.search("handschoen vinyl")).isEmpty();
+    }
+
+    @Test
+    void removedDocumentIsNotFound() {
+        PbmSearchIndex index = new PbmSearchIndex();
+        index.put(1, named("Helm"), 0);
+        index.remove(1);
+
+        assertThat(index.search("helm")).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+}
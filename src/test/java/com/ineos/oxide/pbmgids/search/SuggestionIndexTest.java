@@ -0,0 +1,90 @@
+package com.ineos.oxide.pbmgids.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.entities.WarehouseItem;
+
+class SuggestionIndexTest {
+
+    private static PbmText text(int id, String name, int hits, String... warehouseNumbers) {
+        Pbm pbm = new Pbm();
+        pbm.setId(id);
+        pbm.setName(name);
+        pbm.setHits(hits);
+        pbm.setPublished(true);
+        Set<WarehouseItem> items = new LinkedHashSet<>();
+        for (String warehouseNumber : warehouseNumbers) {
+            WarehouseItem item = new WarehouseItem();
+            item.setWarehouseNumber(warehouseNumber);
+            items.add(item);
+        }
+        pbm.setWarehouseItems(items);
+        return PbmText.of(pbm);
+    }
+
+    @Test
+    void textStartRanksAboveWordStartWhateverThePopularity() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                text(1, "Nitril handschoen", Integer.MAX_VALUE),
+                text(2, "Handschoen leder", 0)), 10);
+
+        assertThat(index.complete("hand")).containsExactly("Handschoen leder", "Nitril handschoen");
+        assertThat(index.complete("ha")).containsExactly("Handschoen leder", "Nitril handschoen");
+    }
+
+    @Test
+    void popularityThenNameOrderCompletionsOfTheSameKind() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                text(1, "Helm wit", 10),
+                text(2, "Helm geel", 10),
+                text(3, "Helm rood", 10_000)), 10);
+
+        assertThat(index.complete("helm")).containsExactly("Helm rood", "Helm geel", "Helm wit");
+        assertThat(index.complete("hel")).containsExactly("Helm rood", "Helm geel", "Helm wit");
+    }
+
+    @Test
+    void completesOnWordStartsAndFoldsAccents() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(text(1, "Veiligheidsbril Ü-vorm", 0)), 10);
+
+        assertThat(index.complete("u-v")).containsExactly("Veiligheidsbril Ü-vorm");
+        assertThat(index.complete("VORM")).containsExactly("Veiligheidsbril Ü-vorm");
+        assertThat(index.complete("bril")).isEmpty();
+    }
+
+    @Test
+    void completesWarehouseNumbersWithoutLeadingZeros() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(text(1, "Helm", 0, "000123456")), 10);
+
+        assertThat(index.complete("0001")).containsExactly("000123456");
+        assertThat(index.complete("123")).containsExactly("000123456");
+        assertThat(index.complete("1234")).containsExactly("000123456");
+    }
+
+    @Test
+    void listsEveryCompletionOnceUpToTheLimit() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(
+                text(1, "Helm helm", 0),
+                text(2, "Helm a", 0),
+                text(3, "Helm b", 0),
+                text(4, "Helm c", 0)), 3);
+
+        assertThat(index.complete("helm")).hasSize(3).doesNotHaveDuplicates();
+        assertThat(index.complete("he")).hasSize(3).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void blankPrefixHasNoCompletions() {
+        SuggestionIndex index = SuggestionIndex.build(List.of(text(1, "Helm", 0)), 10);
+
+        assertThat(index.complete("  ")).isEmpty();
+        assertThat(SuggestionIndex.empty(10).complete("helm")).isEmpty();
+    }
+}
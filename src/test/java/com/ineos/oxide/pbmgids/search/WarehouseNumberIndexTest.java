@@ -0,0 +1,151 @@
+package com.ineos.oxide.pbmgids.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.ineos.oxide.pbmgids.model.entities.Pbm;
+import com.ineos.oxide.pbmgids.model.entities.WarehouseItem;
+
+class WarehouseNumberIndexTest {
+
+    private static PbmText text(int id, String... warehouseNumbers) {
+        Pbm pbm = new Pbm();
+        pbm.setId(id);
+        pbm.setName("PBM " + id);
+        pbm.setPublished(true);
+        Set<WarehouseItem> items = new LinkedHashSet<>();
+        for (String warehouseNumber : warehouseNumbers) {
+            WarehouseItem item = new WarehouseItem();
+            item.setWarehouseNumber(warehouseNumber);
+            items.add(item);
+        }
+        pbm.setWarehouseItems(items);
+        return PbmText.of(pbm);
+    }
+
+    @Test
+    void leadingZerosAreNotSignificant() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "000000000000123456"), text(2, "789")));
+
+        assertThat(index.lookup("123456")).containsExactly(1);
+        assertThat(index.lookup("0123456")).containsExactly(1);
+        assertThat(index.lookup(" 000000000000123456 ")).containsExactly(1);
+        assertThat(index.lookup("000789")).containsExactly(2);
+        assertThat(index.lookup("1234560")).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void zeroIsANumberOfItsOwn() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "000"), text(2, "10")));
+
+        assertThat(index.lookup("0")).containsExactly(1);
+        assertThat(index.lookup("00")).containsExactly(1);
+        assertThat(index.lookup("1")).isEmpty();
+    }
+
+    @Test
+    void numberOfSeveralPbmsFindsThemAll() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "4711"), text(2, "004711"),
+                text(3, "4712")));
+
+        assertThat(index.lookup("4711")).containsExactlyInAnyOrder(1, 2);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void nonNumericAndLongNumbersAreFound() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "AB-12"),
+                text(2, "1234567890123456789012")));
+
+        assertThat(index.lookup("AB-12")).containsExactly(1);
+        assertThat(index.lookup("ab-12")).containsExactly(1);
+        assertThat(index.lookup("001234567890123456789012")).containsExactly(2);
+        assertThat(index.lookup("AB-13")).isEmpty();
+    }
+
+    @Test
+    void invalidInputFindsNothing() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "123")));
+
+        assertThat(index.lookup(null)).isEmpty();
+        assertThat(index.lookup("  ")).isEmpty();
+        assertThat(WarehouseNumberIndex.empty().lookup("123")).isEmpty();
+        assertThat(WarehouseNumberIndex.empty().size()).isZero();
+    }
+
+    @Test
+    void lookupReturnsACopy() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "123")));
+
+        index.lookup("123")[0] = 42;
+
+        assertThat(index.lookup("123")).containsExactly(1);
+    }
+
+    @Test
+    void collidingKeysAreProbed() {
+        // Two numbers get a table of four slots; find three numbers hashing to
+        // the same one
+        int slot = WarehouseNumberIndex.hash(1) & 3;
+        List<Long> colliding = new ArrayList<>();
+        for (long key = 1; colliding.size() < 3; key++) {
+            if ((WarehouseNumberIndex.hash(key) & 3) == slot) {
+                colliding.add(key);
+            }
+        }
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, colliding.get(0).toString()),
+                text(2, colliding.get(1).toString())));
+
+        assertThat(index.lookup(colliding.get(0).toString())).containsExactly(1);
+        assertThat(index.lookup(colliding.get(1).toString())).containsExactly(2);
+        assertThat(index.lookup(colliding.get(2).toString())).isEmpty();
+    }
+
+    @Test
+    void tableGrowsWithTheNumberOfNumbers() {
+        List<PbmText> texts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            texts.add(text(i, Long.toString(100_000_000L + i * 7L)));
+        }
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(texts);
+
+        assertThat(index.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(index.lookup(Long.toString(100_000_000L + i * 7L))).containsExactly(i);
+            assertThat(index.lookup(Long.toString(100_000_001L + i * 7L))).isEmpty();
+        }
+    }
+
+    @Test
+    void prefixMatchesAreInNumberOrderUpToTheLimit() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "1003"), text(2, "0001001"),
+                text(3, "1010"), text(4, "1002"), text(5, "2000")));
+
+        assertThat(index.findByPrefix("100", 10, pbmId -> true)).containsExactly(
+                new WarehouseNumberIndex.Entry("0001001", 2), new WarehouseNumberIndex.Entry("1002", 4),
+                new WarehouseNumberIndex.Entry("1003", 1));
+        assertThat(index.findByPrefix("00100", 2, pbmId -> true)).extracting(WarehouseNumberIndex.Entry::pbmId)
+                .containsExactly(2, 4);
+        assertThat(index.findByPrefix("1", 10, pbmId -> true)).extracting(WarehouseNumberIndex.Entry::pbmId)
+                .containsExactly(2, 4, 1, 3);
+        assertThat(index.findByPrefix("3", 10, pbmId -> true)).isEmpty();
+        assertThat(index.findByPrefix(" ", 10, pbmId -> true)).isEmpty();
+    }
+
+    @Test
+    void prefixLimitCountsVisiblePbmsOnly() {
+        WarehouseNumberIndex index = WarehouseNumberIndex.build(List.of(text(1, "1001"), text(2, "1002"),
+                text(3, "1003"), text(4, "1004")));
+
+        assertThat(index.findByPrefix("100", 2, pbmId -> pbmId % 2 == 0))
+                .extracting(WarehouseNumberIndex.Entry::pbmId).containsExactly(2, 4);
+        assertThat(index.findByPrefix("100", 10, pbmId -> false)).isEmpty();
+    }
+}